@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Random;
+
+/**
+ * Reproducible inputs for the benchmarks.
+ */
+final class BenchmarkData
+{
+	private static final int FIRST_ITEM_ID = 1000;
+
+	private BenchmarkData()
+	{
+	}
+
+	/**
+	 * A layout with size used slots spread over the first size * 5/4 indexes, so that there are gaps to find. Item ids
+	 * repeat, the way duplicated items do in real tags.
+	 */
+	static Layout layout(int size, Random random)
+	{
+		Layout layout = Layout.emptyLayout();
+		int span = size * 5 / 4;
+		while (layout.size() < size)
+		{
+			int index = random.nextInt(span);
+			if (layout.getItemAtIndex(index) == -1)
+			{
+				layout.putItem(FIRST_ITEM_ID + random.nextInt(size), index);
+			}
+		}
+		return layout;
+	}
+
+	/** count item ids, about half of which are in the layout already. */
+	static int[] itemIds(int count, Layout layout, Random random)
+	{
+		int[] usedIndexes = usedIndexes(layout);
+		int[] itemIds = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			itemIds[i] = random.nextBoolean()
+				? layout.getItemAtIndex(usedIndexes[random.nextInt(usedIndexes.length)])
+				: FIRST_ITEM_ID + layout.size() + random.nextInt(count);
+		}
+		return itemIds;
+	}
+
+	/** The used indexes of the layout, in a random order. */
+	static int[] usedIndexes(Layout layout, Random random)
+	{
+		int[] usedIndexes = usedIndexes(layout);
+		for (int i = usedIndexes.length - 1; i > 0; i--)
+		{
+			int j = random.nextInt(i + 1);
+			int index = usedIndexes[i];
+			usedIndexes[i] = usedIndexes[j];
+			usedIndexes[j] = index;
+		}
+		return usedIndexes;
+	}
+
+	private static int[] usedIndexes(Layout layout)
+	{
+		int[] usedIndexes = new int[layout.size()];
+		int[] count = {0};
+		layout.forEachPair((index, itemId) -> usedIndexes[count[0]++] = index);
+		return usedIndexes;
+	}
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Layout operations on layouts of different sizes. The mutating benchmarks leave the layout the same size, so every
+ * invocation sees the same amount of data.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LayoutBenchmark
+{
+	@Param({"50", "500", "5000"})
+	public int size;
+
+	private Layout layout;
+	private String layoutString;
+	// The used indexes in a random order, and item ids to put in them.
+	private int[] usedIndexes;
+	private int[] itemIds;
+	private int next = 0;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(size);
+		layout = BenchmarkData.layout(size, random);
+		layoutString = layout.toString();
+		usedIndexes = BenchmarkData.usedIndexes(layout, random);
+		itemIds = BenchmarkData.itemIds(usedIndexes.length, layout, random);
+	}
+
+	@Benchmark
+	public Layout fromString()
+	{
+		return Layout.fromString(layoutString);
+	}
+
+	@Benchmark
+	public String layoutToString()
+	{
+		return layout.toString();
+	}
+
+	@Benchmark
+	public void putItem()
+	{
+		int i = nextIndex();
+		layout.putItem(itemIds[i], usedIndexes[i]);
+	}
+
+	@Benchmark
+	public void moveItem()
+	{
+		// Both indexes are used, so the move swaps the two items.
+		int draggedItemIndex = usedIndexes[nextIndex()];
+		int targetIndex = usedIndexes[(next + usedIndexes.length / 2) % usedIndexes.length];
+		layout.moveItem(draggedItemIndex, targetIndex, layout.getItemAtIndex(draggedItemIndex));
+	}
+
+	@Benchmark
+	public void duplicateItem()
+	{
+		int clickedItemIndex = usedIndexes[nextIndex()];
+		int duplicatedItemIndex = layout.getFirstEmptyIndex(clickedItemIndex);
+		layout.duplicateItem(clickedItemIndex, layout.getItemAtIndex(clickedItemIndex));
+		layout.clearIndex(duplicatedItemIndex);
+	}
+
+	@Benchmark
+	public int getFirstEmptyIndex()
+	{
+		return layout.getFirstEmptyIndex(usedIndexes[nextIndex()]);
+	}
+
+	private int nextIndex()
+	{
+		int i = next;
+		next = (i + 1) % usedIndexes.length;
+		return i;
+	}
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Generating a zigzag layout for a full inventory and set of gear into current layouts of different sizes, with items
+ * resolved through a 30,000 item fake catalog. These call the generator directly, so the generated layout cache isn't
+ * involved.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LayoutGeneratorBenchmark
+{
+	private static final int EQUIPMENT_SIZE = 14;
+	private static final int INVENTORY_SIZE = 28;
+	private static final int CATALOG_SIZE = 30_000;
+
+	@Param({"50", "500", "5000"})
+	public int size;
+
+	private LayoutGenerator layoutGenerator;
+	private Layout currentLayout;
+	private int[] equippedItems;
+	private int[] inventory;
+
+	@Setup
+	public void setUp()
+	{
+		Random random = new Random(size);
+		FakeItemCatalog catalog = FakeItemCatalog.generate(CATALOG_SIZE, size);
+		layoutGenerator = new LayoutGenerator(catalog);
+		currentLayout = BenchmarkData.layout(size, random);
+		equippedItems = BenchmarkData.itemIds(EQUIPMENT_SIZE, currentLayout, random);
+		// Some gear has a different id when equipped.
+		for (int i = 0; i < equippedItems.length; i += 3)
+		{
+			equippedItems[i] = catalog.randomEquippableItemId(random);
+		}
+		inventory = BenchmarkData.itemIds(INVENTORY_SIZE, currentLayout, random);
+	}
+
+	@Benchmark
+	public Layout zigzagLayout()
+	{
+		return layoutGenerator.zigzagLayout(equippedItems, equippedItems.length, inventory, null, new int[0], currentLayout, 4);
+	}
+
+	/** zigzagLayout plus canonicalizing the gear. */
+	@Benchmark
+	public Layout generateLayout()
+	{
+		return layoutGenerator.generateLayout(equippedItems, inventory, null, new int[0], currentLayout, 4);
+	}
+}
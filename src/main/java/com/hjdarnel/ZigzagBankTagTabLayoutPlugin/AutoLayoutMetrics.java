@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Timings and counters for auto-layout, kept only while the debug option is on. Each phase's durations go into a
+ * histogram with one bucket per power of two nanoseconds, so recording a sample never allocates. Generation records from
+ * a background thread, so everything is guarded by the metrics object's lock; readers of a histogram should hold it too.
+ */
+final class AutoLayoutMetrics
+{
+	@RequiredArgsConstructor
+	enum Phase
+	{
+		CONTAINER_READ("Container read"),
+		GENERATION("Generation"),
+		// Part of generation, timed separately.
+		VARIANT_RESOLUTION("Variant resolution"),
+		CONVERSION("Conversion"),
+		;
+
+		@Getter
+		private final String displayName;
+	}
+
+	private final Histogram[] histograms = new Histogram[Phase.values().length];
+	private long slotsPlaced = 0;
+	private long itemsDisplaced = 0;
+	private long compositionLookups = 0;
+
+	AutoLayoutMetrics()
+	{
+		for (int i = 0; i < histograms.length; i++)
+		{
+			histograms[i] = new Histogram();
+		}
+	}
+
+	synchronized void record(Phase phase, long nanos)
+	{
+		histograms[phase.ordinal()].record(nanos);
+	}
+
+	Histogram getHistogram(Phase phase)
+	{
+		return histograms[phase.ordinal()];
+	}
+
+	synchronized void addSlotsPlaced(int count)
+	{
+		slotsPlaced += count;
+	}
+
+	synchronized void addItemsDisplaced(int count)
+	{
+		itemsDisplaced += count;
+	}
+
+	synchronized void countCompositionLookup()
+	{
+		compositionLookups++;
+	}
+
+	synchronized long getSlotsPlaced()
+	{
+		return slotsPlaced;
+	}
+
+	synchronized long getItemsDisplaced()
+	{
+		return itemsDisplaced;
+	}
+
+	synchronized long getCompositionLookups()
+	{
+		return compositionLookups;
+	}
+
+	synchronized void reset()
+	{
+		for (Histogram histogram : histograms)
+		{
+			histogram.reset();
+		}
+		slotsPlaced = 0;
+		itemsDisplaced = 0;
+		compositionLookups = 0;
+	}
+
+	/** One line per phase and one for the counters. */
+	synchronized String[] summarize()
+	{
+		Phase[] phases = Phase.values();
+		String[] lines = new String[phases.length + 1];
+		for (Phase phase : phases)
+		{
+			lines[phase.ordinal()] = phase.getDisplayName() + ": " + getHistogram(phase).summarize();
+		}
+		lines[phases.length] = "Slots placed: " + slotsPlaced + ", items displaced: " + itemsDisplaced + ", composition lookups: " + compositionLookups;
+		return lines;
+	}
+
+	static String formatNanos(long nanos)
+	{
+		if (nanos < 10_000)
+		{
+			return nanos + "ns";
+		}
+		if (nanos < 10_000_000)
+		{
+			return nanos / 1_000 + "us";
+		}
+		return nanos / 1_000_000 + "ms";
+	}
+
+	/**
+	 * Bucket 0 counts durations of 0, and bucket b counts durations from 2^(b-1) to 2^b - 1 nanoseconds. Percentiles are
+	 * reported as the upper end of their bucket, so they are at most twice the real value.
+	 */
+	static final class Histogram
+	{
+		private final long[] buckets = new long[Long.SIZE];
+		@Getter
+		private long count = 0;
+		@Getter
+		private long totalNanos = 0;
+		@Getter
+		private long maxNanos = 0;
+
+		void record(long nanos)
+		{
+			nanos = Math.max(nanos, 0);
+			buckets[Long.SIZE - Long.numberOfLeadingZeros(nanos)]++;
+			count++;
+			totalNanos += nanos;
+			maxNanos = Math.max(maxNanos, nanos);
+		}
+
+		long getBucketCount(int bucket)
+		{
+			return buckets[bucket];
+		}
+
+		/** @param fraction from 0 to 1, e.g. 0.99 for the 99th percentile. 0 if nothing was recorded. */
+		long getPercentile(double fraction)
+		{
+			long rank = Math.max(1, (long) Math.ceil(fraction * count));
+			long seen = 0;
+			for (int bucket = 0; bucket < buckets.length; bucket++)
+			{
+				seen += buckets[bucket];
+				if (seen >= rank)
+				{
+					long upperBound = bucket == 0 ? 0 : (1L << bucket) - 1;
+					return Math.min(upperBound, maxNanos);
+				}
+			}
+			return 0;
+		}
+
+		String summarize()
+		{
+			if (count == 0)
+			{
+				return "no samples";
+			}
+			return count + " samples, mean " + formatNanos(totalNanos / count)
+				+ ", p50 " + formatNanos(getPercentile(0.5))
+				+ ", p99 " + formatNanos(getPercentile(0.99))
+				+ ", max " + formatNanos(maxNanos);
+		}
+
+		void reset()
+		{
+			Arrays.fill(buckets, 0);
+			count = 0;
+			totalNanos = 0;
+			maxNanos = 0;
+		}
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import javax.inject.Inject;
+import net.runelite.client.ui.overlay.OverlayPanel;
+import net.runelite.client.ui.overlay.OverlayPosition;
+import net.runelite.client.ui.overlay.components.LineComponent;
+import net.runelite.client.ui.overlay.components.TitleComponent;
+
+/**
+ * Shows the auto-layout timings and counters while the debug option is on.
+ */
+class AutoLayoutMetricsOverlay extends OverlayPanel
+{
+	private final ZigzagBankTagTabLayoutPlugin plugin;
+
+	@Inject
+	AutoLayoutMetricsOverlay(ZigzagBankTagTabLayoutPlugin plugin)
+	{
+		super(plugin);
+		this.plugin = plugin;
+		setPosition(OverlayPosition.TOP_LEFT);
+	}
+
+	@Override
+	public Dimension render(Graphics2D graphics)
+	{
+		AutoLayoutMetrics metrics = plugin.getMetrics();
+		if (metrics == null)
+		{
+			return null;
+		}
+
+		panelComponent.getChildren().add(TitleComponent.builder().text("Zigzag auto-layout").build());
+		synchronized (metrics)
+		{
+			for (AutoLayoutMetrics.Phase phase : AutoLayoutMetrics.Phase.values())
+			{
+				AutoLayoutMetrics.Histogram histogram = metrics.getHistogram(phase);
+				String timings = histogram.getCount() == 0 ? "-" :
+					AutoLayoutMetrics.formatNanos(histogram.getPercentile(0.5)) + " / " + AutoLayoutMetrics.formatNanos(histogram.getPercentile(0.99));
+				panelComponent.getChildren().add(LineComponent.builder().left(phase.getDisplayName()).right(timings).build());
+			}
+			panelComponent.getChildren().add(LineComponent.builder().left("Slots placed").right(Long.toString(metrics.getSlotsPlaced())).build());
+			panelComponent.getChildren().add(LineComponent.builder().left("Items displaced").right(Long.toString(metrics.getItemsDisplaced())).build());
+			panelComponent.getChildren().add(LineComponent.builder().left("Composition lookups").right(Long.toString(metrics.getCompositionLookups())).build());
+		}
+		return super.render(graphics);
+	}
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generates auto-layouts in the background and hands them back to the client thread, one request at a time. A newer
+ * request supersedes an older one, and a request is only applied if nothing it was made from changed meanwhile.
+ */
+@Slf4j
+final class AutoLayoutRunner
+{
+	enum Discard
+	{
+		// The equipment, inventory or tab layout changed after the request was made.
+		STALE,
+		// The tab no longer has a layout, e.g. because the tag was deleted.
+		TAB_DELETED,
+		// Generation threw.
+		FAILED,
+	}
+
+	interface Host
+	{
+		/** Runs on the executor. */
+		Layout generate(AutoLayoutRequest request);
+
+		/** Whether the equipment or inventory changed since the request was made. Called from both threads. */
+		boolean isStale(AutoLayoutRequest request);
+
+		/** Runs on the client thread. null if the tab has no layout. */
+		net.runelite.client.plugins.banktags.tabs.Layout loadTabLayout(String tag);
+
+		/** Runs on the client thread. */
+		void apply(AutoLayoutRequest request, net.runelite.client.plugins.banktags.tabs.Layout savedLayout, Layout previewLayout);
+
+		/** Runs on the client thread. */
+		void discard(AutoLayoutRequest request, Discard reason);
+	}
+
+	private final Executor executor;
+	private final Executor clientThread;
+	private final Host host;
+
+	// Set and cleared on the client thread, read on the executor to skip superseded requests.
+	private volatile AutoLayoutRequest pendingRequest = null;
+
+	AutoLayoutRunner(Executor executor, Executor clientThread, Host host)
+	{
+		this.executor = executor;
+		this.clientThread = clientThread;
+		this.host = host;
+	}
+
+	/** Must be called on the client thread. Supersedes any pending request. */
+	void submit(AutoLayoutRequest request)
+	{
+		pendingRequest = request;
+		executor.execute(() -> generate(request));
+	}
+
+	/**
+	 * Must be called on the client thread. The pending request, if any, is neither applied nor discarded. A generation
+	 * that already started runs to the end, since the generator's state must stay consistent, and is dropped after.
+	 */
+	void cancel()
+	{
+		pendingRequest = null;
+	}
+
+	boolean isPending()
+	{
+		return pendingRequest != null;
+	}
+
+	private void generate(AutoLayoutRequest request)
+	{
+		if (request != pendingRequest)
+		{
+			return;
+		}
+		if (host.isStale(request))
+		{
+			// Not worth generating, but publishing tells the player why nothing happened.
+			clientThread.execute(() -> publish(request, null));
+			return;
+		}
+		Layout previewLayout;
+		try
+		{
+			previewLayout = host.generate(request);
+		}
+		catch (RuntimeException e)
+		{
+			log.warn("could not generate a layout for tag {}", request.getTag(), e);
+			clientThread.execute(() -> discard(request, Discard.FAILED));
+			return;
+		}
+		clientThread.execute(() -> publish(request, previewLayout));
+	}
+
+	/** previewLayout is null if generation was skipped because the request was already stale. */
+	private void publish(AutoLayoutRequest request, Layout previewLayout)
+	{
+		if (request != pendingRequest)
+		{
+			return;
+		}
+		net.runelite.client.plugins.banktags.tabs.Layout savedLayout = host.loadTabLayout(request.getTag());
+		if (savedLayout == null)
+		{
+			discard(request, Discard.TAB_DELETED);
+		}
+		else if (previewLayout == null || host.isStale(request) || !Arrays.equals(savedLayout.getLayout(), request.getTabItemIds()))
+		{
+			discard(request, Discard.STALE);
+		}
+		else
+		{
+			pendingRequest = null;
+			host.apply(request, savedLayout, previewLayout);
+		}
+	}
+
+	private void discard(AutoLayoutRequest request, Discard reason)
+	{
+		if (request != pendingRequest)
+		{
+			return;
+		}
+		pendingRequest = null;
+		log.debug("discarding the generated layout for tag {}: {}", request.getTag(), reason);
+		host.discard(request, reason);
+	}
+}
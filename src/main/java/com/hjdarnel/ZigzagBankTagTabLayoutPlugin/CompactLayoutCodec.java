@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Compact binary form of a {@link Layout}, for storing large layouts in config strings.
+ *
+ * Format: a version byte, the number of used indexes as a varint, then for every used index in ascending order the gap
+ * since the previous used index and the item id, both as varints. As text it is url-safe Base64 without padding; the
+ * version byte makes the first character 'A', which can never start the legacy "itemId:index,..." format.
+ */
+final class CompactLayoutCodec
+{
+	static final int VERSION = 1;
+
+	private CompactLayoutCodec()
+	{
+	}
+
+	static boolean looksCompact(String layoutString)
+	{
+		return !layoutString.isEmpty() && layoutString.charAt(0) == 'A';
+	}
+
+	static String encodeToString(Layout layout)
+	{
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(encode(layout));
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the string is not a layout in this format.
+	 */
+	static Layout decodeString(String layoutString)
+	{
+		byte[] bytes = Base64.getUrlDecoder().decode(layoutString);
+		return decode(bytes, 0, bytes.length);
+	}
+
+	static byte[] encode(Layout layout)
+	{
+		// A varint is at most 5 bytes.
+		Writer writer = new Writer(new byte[1 + 5 + layout.size() * 10]);
+		writer.writeByte(VERSION);
+		writer.writeVarint(layout.size());
+		layout.forEachPair(writer);
+		return Arrays.copyOf(writer.bytes, writer.position);
+	}
+
+	/**
+	 * @throws IllegalArgumentException if the bytes are not a layout in this format.
+	 */
+	static Layout decode(byte[] bytes, int offset, int length)
+	{
+		Reader reader = new Reader(bytes, offset, offset + length);
+		int version = reader.readByte();
+		if (version != VERSION)
+		{
+			throw new IllegalArgumentException("unsupported layout version " + version);
+		}
+		int count = reader.readVarint();
+		// Every entry takes at least two bytes, so a larger count can only come from corrupt input.
+		if (count < 0 || count > reader.remaining() / 2)
+		{
+			throw new IllegalArgumentException("layout count " + count + " exceeds input");
+		}
+		Layout layout = Layout.emptyLayout();
+		long index = -1;
+		for (int i = 0; i < count; i++)
+		{
+			int gap = reader.readVarint();
+			int itemId = reader.readVarint();
+			// Layout.putItem ignores negative indexes and clears on non-positive ids, so check them here instead.
+			if (gap < 0 || itemId <= 0)
+			{
+				throw new IllegalArgumentException("malformed layout entry");
+			}
+			index += gap + 1L;
+			if (index > Layout.MAX_INDEX)
+			{
+				throw new IllegalArgumentException("layout index out of range");
+			}
+			layout.putItem(itemId, (int) index);
+		}
+		return layout;
+	}
+
+	private static final class Writer implements Layout.SlotConsumer
+	{
+		private final byte[] bytes;
+		private int position;
+		private int previousIndex = -1;
+
+		private Writer(byte[] bytes)
+		{
+			this.bytes = bytes;
+		}
+
+		@Override
+		public void accept(int index, int itemId)
+		{
+			writeVarint(index - previousIndex - 1);
+			writeVarint(itemId);
+			previousIndex = index;
+		}
+
+		void writeByte(int b)
+		{
+			bytes[position++] = (byte) b;
+		}
+
+		void writeVarint(int value)
+		{
+			while ((value & ~0x7F) != 0)
+			{
+				writeByte((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			writeByte(value);
+		}
+	}
+
+	private static final class Reader
+	{
+		private final byte[] bytes;
+		private final int end;
+		private int position;
+
+		private Reader(byte[] bytes, int position, int end)
+		{
+			this.bytes = bytes;
+			this.position = position;
+			this.end = end;
+		}
+
+		int remaining()
+		{
+			return end - position;
+		}
+
+		int readByte()
+		{
+			if (position >= end)
+			{
+				throw new IllegalArgumentException("truncated layout");
+			}
+			return bytes[position++] & 0xFF;
+		}
+
+		int readVarint()
+		{
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7)
+			{
+				int b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0)
+				{
+					return value;
+				}
+			}
+			throw new IllegalArgumentException("malformed varint");
+		}
+	}
+}
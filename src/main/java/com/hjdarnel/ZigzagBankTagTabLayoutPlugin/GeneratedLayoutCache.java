@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently generated layouts by a 64-bit fingerprint of everything that went into generating them, evicting
+ * the least recently used layout when full. Layouts are copied on the way in and out, so callers may modify them.
+ * Thread-safe, so the client thread can look for a remembered layout while another thread is generating one.
+ */
+final class GeneratedLayoutCache
+{
+	private final Map<Long, Layout> layouts;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	GeneratedLayoutCache(int capacity)
+	{
+		layouts = new LinkedHashMap<Long, Layout>(16, 0.75f, true)
+		{
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, Layout> eldest)
+			{
+				return size() > capacity;
+			}
+		};
+	}
+
+	/** @return a copy of the cached layout, or null. Counts as a hit or a miss. */
+	synchronized Layout get(long fingerprint)
+	{
+		Layout layout = layouts.get(fingerprint);
+		if (layout == null)
+		{
+			misses++;
+			return null;
+		}
+		hits++;
+		return layout.copy();
+	}
+
+	/**
+	 * @return a copy of the cached layout, or null. Counts as a hit when found, but doesn't count a miss, for probes
+	 * that are followed by a {@link #get} of the same fingerprint whenever they miss.
+	 */
+	synchronized Layout getIfPresent(long fingerprint)
+	{
+		Layout layout = layouts.get(fingerprint);
+		if (layout == null)
+		{
+			return null;
+		}
+		hits++;
+		return layout.copy();
+	}
+
+	synchronized void put(long fingerprint, Layout layout)
+	{
+		layouts.put(fingerprint, layout.copy());
+	}
+
+	synchronized void clear()
+	{
+		layouts.clear();
+	}
+
+	synchronized int size()
+	{
+		return layouts.size();
+	}
+
+	synchronized long getHits()
+	{
+		return hits;
+	}
+
+	synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/** Fraction of lookups that were hits, or 0 if there were no lookups. */
+	synchronized double getHitRate()
+	{
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	/**
+	 * Fingerprints the inputs of {@link LayoutGenerator#basicBankTagLayout}. The current layout contributes its content
+	 * hash, and a missing rune pouch hashes differently from an empty one.
+	 */
+	static long fingerprint(int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit)
+	{
+		long h = 0x6A09E667F3BCC908L;
+		h = mix(h, equippedItems);
+		h = mix(h, inventory);
+		h = runePouch == null ? mix(h, -1L) : mix(h, runePouch);
+		h = mix(h, additionalItems);
+		h = mix(h, currentLayout.getContentHash());
+		return mix(h, duplicateLimit);
+	}
+
+	private static long mix(long h, int[] values)
+	{
+		// The length keeps ([1, 2], [3]) and ([1], [2, 3]) apart.
+		h = mix(h, values.length);
+		for (int value : values)
+		{
+			h = mix(h, value);
+		}
+		return h;
+	}
+
+	private static long mix(long h, long value)
+	{
+		h = (h ^ value) * 0x9E3779B97F4A7C15L;
+		return h ^ (h >>> 32);
+	}
+}
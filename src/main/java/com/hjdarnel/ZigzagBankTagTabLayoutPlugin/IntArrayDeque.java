@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A growable ring buffer of ints, used as a FIFO queue or a stack without boxing.
+ */
+final class IntArrayDeque
+{
+	private int[] elements;
+	private int head = 0;
+	private int size = 0;
+
+	IntArrayDeque(int expectedSize)
+	{
+		elements = new int[Math.max(expectedSize, 8)];
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	void addLast(int value)
+	{
+		if (size == elements.length)
+		{
+			grow();
+		}
+		elements[(head + size) % elements.length] = value;
+		size++;
+	}
+
+	void addFirst(int value)
+	{
+		if (size == elements.length)
+		{
+			grow();
+		}
+		head = (head - 1 + elements.length) % elements.length;
+		elements[head] = value;
+		size++;
+	}
+
+	int pollFirst()
+	{
+		if (size == 0)
+		{
+			throw new NoSuchElementException();
+		}
+		int value = elements[head];
+		head = (head + 1) % elements.length;
+		size--;
+		return value;
+	}
+
+	int pollLast()
+	{
+		if (size == 0)
+		{
+			throw new NoSuchElementException();
+		}
+		size--;
+		return elements[(head + size) % elements.length];
+	}
+
+	void clear()
+	{
+		head = 0;
+		size = 0;
+	}
+
+	private void grow()
+	{
+		int[] grown = new int[elements.length * 2];
+		int firstPart = Math.min(size, elements.length - head);
+		System.arraycopy(elements, head, grown, 0, firstPart);
+		System.arraycopy(elements, 0, grown, firstPart, size - firstPart);
+		elements = grown;
+		head = 0;
+	}
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+
+/**
+ * An open-addressing int to int hash map, so that hot lookups keyed by item id or index don't box. Lookups for
+ * missing keys return the missing value chosen at construction.
+ */
+final class IntIntHashMap
+{
+	private static final int FREE_KEY = 0;
+	private static final float LOAD_FACTOR = 0.5f;
+
+	private final int missingValue;
+	private int[] keys;
+	private int[] values;
+	private int mask;
+	private int size;
+	// FREE_KEY marks empty buckets, so an entry with that key is stored on the side.
+	private boolean hasFreeKey;
+	private int freeKeyValue;
+
+	IntIntHashMap(int expectedSize, int missingValue)
+	{
+		this.missingValue = missingValue;
+		int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	int getMissingValue()
+	{
+		return missingValue;
+	}
+
+	boolean containsKey(int key)
+	{
+		if (key == FREE_KEY)
+		{
+			return hasFreeKey;
+		}
+		return keys[indexOf(key)] == key;
+	}
+
+	int get(int key)
+	{
+		if (key == FREE_KEY)
+		{
+			return hasFreeKey ? freeKeyValue : missingValue;
+		}
+		int i = indexOf(key);
+		return keys[i] == key ? values[i] : missingValue;
+	}
+
+	/** @return the previous value for the key, or the missing value. */
+	int put(int key, int value)
+	{
+		if (key == FREE_KEY)
+		{
+			int previous = hasFreeKey ? freeKeyValue : missingValue;
+			if (!hasFreeKey)
+			{
+				hasFreeKey = true;
+				size++;
+			}
+			freeKeyValue = value;
+			return previous;
+		}
+		int i = indexOf(key);
+		if (keys[i] == key)
+		{
+			int previous = values[i];
+			values[i] = value;
+			return previous;
+		}
+		keys[i] = key;
+		values[i] = value;
+		if (++size > keys.length * LOAD_FACTOR)
+		{
+			rehash(keys.length << 1);
+		}
+		return missingValue;
+	}
+
+	/** @return the removed value, or the missing value if the key was not present. */
+	int remove(int key)
+	{
+		if (key == FREE_KEY)
+		{
+			if (!hasFreeKey)
+			{
+				return missingValue;
+			}
+			hasFreeKey = false;
+			size--;
+			return freeKeyValue;
+		}
+		int i = indexOf(key);
+		if (keys[i] != key)
+		{
+			return missingValue;
+		}
+		int removed = values[i];
+		size--;
+		// Backward-shift deletion, so that lookups never need tombstones.
+		int gap = i;
+		for (int j = (i + 1) & mask; keys[j] != FREE_KEY; j = (j + 1) & mask)
+		{
+			int home = hash(keys[j]) & mask;
+			if (((j - home) & mask) >= ((j - gap) & mask))
+			{
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		keys[gap] = FREE_KEY;
+		return removed;
+	}
+
+	void clear()
+	{
+		Arrays.fill(keys, FREE_KEY);
+		hasFreeKey = false;
+		size = 0;
+	}
+
+	private int indexOf(int key)
+	{
+		int i = hash(key) & mask;
+		while (keys[i] != key && keys[i] != FREE_KEY)
+		{
+			i = (i + 1) & mask;
+		}
+		return i;
+	}
+
+	private void rehash(int capacity)
+	{
+		int[] oldKeys = keys;
+		int[] oldValues = values;
+		keys = new int[capacity];
+		values = new int[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++)
+		{
+			if (oldKeys[i] != FREE_KEY)
+			{
+				int j = indexOf(oldKeys[i]);
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	private static int hash(int key)
+	{
+		int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+
+/**
+ * A bounded int to int cache that evicts the least recently used entry when full. Entries live in fixed arrays linked
+ * into a recency list, so neither lookups nor evictions allocate. Not thread safe.
+ */
+final class IntLruCache
+{
+	private static final int NONE = -1;
+
+	private final int missingValue;
+	private final IntIntHashMap nodeByKey;
+	private final int[] keys;
+	private final int[] values;
+	private final int[] newer;
+	private final int[] older;
+	private int newest = NONE;
+	private int oldest = NONE;
+	private int size = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+
+	IntLruCache(int capacity, int missingValue)
+	{
+		if (capacity <= 0)
+		{
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		this.missingValue = missingValue;
+		nodeByKey = new IntIntHashMap(capacity, NONE);
+		keys = new int[capacity];
+		values = new int[capacity];
+		newer = new int[capacity];
+		older = new int[capacity];
+	}
+
+	/** @return the cached value, or the missing value. Counts as a hit or a miss. */
+	int get(int key)
+	{
+		int node = nodeByKey.get(key);
+		if (node == NONE)
+		{
+			misses++;
+			return missingValue;
+		}
+		hits++;
+		moveToNewest(node);
+		return values[node];
+	}
+
+	void put(int key, int value)
+	{
+		int node = nodeByKey.get(key);
+		if (node == NONE)
+		{
+			if (size < keys.length)
+			{
+				node = size++;
+			}
+			else
+			{
+				node = oldest;
+				nodeByKey.remove(keys[node]);
+				unlink(node);
+			}
+			keys[node] = key;
+			nodeByKey.put(key, node);
+			linkAsNewest(node);
+		}
+		else
+		{
+			moveToNewest(node);
+		}
+		values[node] = value;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	int capacity()
+	{
+		return keys.length;
+	}
+
+	long getHits()
+	{
+		return hits;
+	}
+
+	long getMisses()
+	{
+		return misses;
+	}
+
+	/** Fraction of lookups that were hits, or 0 if there were no lookups. */
+	double getHitRate()
+	{
+		long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	void clear()
+	{
+		nodeByKey.clear();
+		Arrays.fill(newer, 0, size, NONE);
+		Arrays.fill(older, 0, size, NONE);
+		newest = oldest = NONE;
+		size = 0;
+		hits = misses = 0;
+	}
+
+	private void moveToNewest(int node)
+	{
+		if (node != newest)
+		{
+			unlink(node);
+			linkAsNewest(node);
+		}
+	}
+
+	private void linkAsNewest(int node)
+	{
+		older[node] = newest;
+		newer[node] = NONE;
+		if (newest != NONE)
+		{
+			newer[newest] = node;
+		}
+		newest = node;
+		if (oldest == NONE)
+		{
+			oldest = node;
+		}
+	}
+
+	private void unlink(int node)
+	{
+		int newerNode = newer[node];
+		int olderNode = older[node];
+		if (newerNode != NONE)
+		{
+			older[newerNode] = olderNode;
+		}
+		else
+		{
+			newest = olderNode;
+		}
+		if (olderNode != NONE)
+		{
+			newer[olderNode] = newerNode;
+		}
+		else
+		{
+			oldest = newerNode;
+		}
+	}
+}
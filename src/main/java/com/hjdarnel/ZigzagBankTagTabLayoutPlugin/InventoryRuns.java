@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+
+/**
+ * An item container run-length encoded as parallel arrays of item id and run length. Empty slots are skipped, so items
+ * on either side of a gap join the same run. Instances are meant to be reused through {@link #encode(int[])}.
+ */
+final class InventoryRuns
+{
+	private int[] itemIds = new int[28];
+	private int[] lengths = new int[28];
+	private int runCount = 0;
+
+	/** Replaces the runs with those of the given container, in one pass. -1 marks an empty slot. */
+	InventoryRuns encode(int[] container)
+	{
+		runCount = 0;
+		for (int itemId : container)
+		{
+			if (itemId == -1)
+			{
+				continue;
+			}
+			if (runCount > 0 && itemIds[runCount - 1] == itemId)
+			{
+				lengths[runCount - 1]++;
+				continue;
+			}
+			if (runCount == itemIds.length)
+			{
+				itemIds = Arrays.copyOf(itemIds, runCount * 2);
+				lengths = Arrays.copyOf(lengths, runCount * 2);
+			}
+			itemIds[runCount] = itemId;
+			lengths[runCount] = 1;
+			runCount++;
+		}
+		return this;
+	}
+
+	int getRunCount()
+	{
+		return runCount;
+	}
+
+	int getItemId(int run)
+	{
+		return itemIds[run];
+	}
+
+	int getLength(int run)
+	{
+		return lengths[run];
+	}
+}
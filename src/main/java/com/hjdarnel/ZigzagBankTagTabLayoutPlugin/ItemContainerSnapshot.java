@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+
+/**
+ * The item ids of an item container as of its last change, with a version that increases whenever the ids change.
+ * Updates that leave the ids as they were, like a stack size changing, keep the version. Each change produces a new
+ * array, so an array returned by {@link #getItemIds()} never changes and can be handed to other threads.
+ */
+final class ItemContainerSnapshot
+{
+	private static final int[] EMPTY = new int[0];
+
+	private volatile int[] itemIds = EMPTY;
+	private volatile int version = 0;
+	private volatile boolean initialized = false;
+
+	/** @param container null if the container doesn't exist, which counts as empty. */
+	void update(ItemContainer container)
+	{
+		Item[] items = container != null ? container.getItems() : null;
+		if (!hasSameItemIds(items))
+		{
+			int[] newItemIds = EMPTY;
+			if (items != null)
+			{
+				newItemIds = new int[items.length];
+				for (int i = 0; i < items.length; i++)
+				{
+					newItemIds[i] = items[i].getId();
+				}
+			}
+			itemIds = newItemIds;
+			version++;
+		}
+		initialized = true;
+	}
+
+	private boolean hasSameItemIds(Item[] items)
+	{
+		int[] current = itemIds;
+		if (items == null)
+		{
+			return current.length == 0;
+		}
+		if (items.length != current.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < items.length; i++)
+		{
+			if (items[i].getId() != current[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Forgets the contents, for when changes may have been missed. */
+	void invalidate()
+	{
+		initialized = false;
+	}
+
+	boolean isInitialized()
+	{
+		return initialized;
+	}
+
+	/** Empty slots are -1. Must not be modified. */
+	int[] getItemIds()
+	{
+		return itemIds;
+	}
+
+	int getVersion()
+	{
+		return version;
+	}
+}
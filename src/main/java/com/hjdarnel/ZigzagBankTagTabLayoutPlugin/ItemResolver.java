@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Collection;
+import net.runelite.client.game.ItemVariationMapping;
+
+/**
+ * The item lookups layout generation needs. The plugin answers them from the game's item definitions; anything that
+ * runs without a client, like benchmarks, can supply its own.
+ */
+interface ItemResolver
+{
+	/** The inventory id of an item that has a different id when equipped, e.g. weight reducing items. */
+	int canonicalize(int itemId);
+
+	/** The real item id if itemId is a placeholder, otherwise itemId. */
+	int getNonPlaceholderId(int itemId);
+
+	/** Same as {@link ItemVariationMapping#map(int)}. */
+	default int getVariationBaseId(int itemId)
+	{
+		return ItemVariationMapping.map(itemId);
+	}
+
+	/** Same as {@link ItemVariationMapping#getVariations(int)}. */
+	default Collection<Integer> getVariations(int baseItemId)
+	{
+		return ItemVariationMapping.getVariations(baseItemId);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import lombok.RequiredArgsConstructor;
+import net.runelite.api.ItemID;
+import net.runelite.client.game.ItemVariationMapping;
+
+/**
+ * Array-backed views of {@link ItemVariationMapping}, as seen through an {@link ItemResolver}: a table from item id to
+ * variation base id that is filled in as ids are looked up, and a bitset of every rune pouch variant. Both avoid going
+ * through the mapping's boxed collections in the generator's loops.
+ */
+@RequiredArgsConstructor
+final class ItemVariationTable
+{
+	private static final int UNKNOWN = -1;
+
+	private final ItemResolver itemResolver;
+
+	private int[] baseIds = new int[0];
+	private long[] runePouches = null;
+
+	/** Same as {@link ItemResolver#getVariationBaseId(int)}. */
+	int getBaseId(int itemId)
+	{
+		if (itemId < 0)
+		{
+			return itemResolver.getVariationBaseId(itemId);
+		}
+		if (itemId >= baseIds.length)
+		{
+			int oldLength = baseIds.length;
+			baseIds = Arrays.copyOf(baseIds, Math.max(itemId + 1, Math.max(oldLength * 2, 1024)));
+			Arrays.fill(baseIds, oldLength, baseIds.length, UNKNOWN);
+		}
+		int baseId = baseIds[itemId];
+		if (baseId == UNKNOWN)
+		{
+			baseId = baseIds[itemId] = itemResolver.getVariationBaseId(itemId);
+		}
+		return baseId;
+	}
+
+	/** Whether the item is any variant of the rune pouch or the divine rune pouch. */
+	boolean isRunePouch(int itemId)
+	{
+		if (runePouches == null)
+		{
+			runePouches = toBitset(ItemID.RUNE_POUCH, ItemID.DIVINE_RUNE_POUCH);
+		}
+		int word = itemId >>> 6;
+		return itemId >= 0 && word < runePouches.length && (runePouches[word] & (1L << itemId)) != 0;
+	}
+
+	private long[] toBitset(int... baseItemIds)
+	{
+		long[] bits = new long[0];
+		for (int baseItemId : baseItemIds)
+		{
+			for (int itemId : itemResolver.getVariations(baseItemId))
+			{
+				if (itemId < 0)
+				{
+					continue;
+				}
+				int word = itemId >>> 6;
+				if (word >= bits.length)
+				{
+					bits = Arrays.copyOf(bits, word + 1);
+				}
+				bits[word] |= 1L << itemId;
+			}
+		}
+		return bits;
+	}
+}
@@ -27,77 +27,293 @@ package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
 
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.ArrayList;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 @Slf4j
 public class Layout {
 
-    // Maps indexes to items.
-    private Map<Integer, Integer> layoutMap = new HashMap<>();
+    private static final int EMPTY = -1;
+    private static final int MIN_CAPACITY = 64;
+    private static final int ROW_WIDTH = 8;
+    /**
+     * The highest index a layout can hold. Far beyond any real bank, and it keeps a hostile or corrupt layout string
+     * from allocating unbounded slot arrays.
+     */
+    public static final int MAX_INDEX = (1 << 20) - 1;
+
+    // Maps indexes to items. Unused slots hold EMPTY.
+    private int[] slots = new int[0];
+    private int size = 0;
+    // Bit i of word i / 64 is set when index i is used. Covers exactly the indexes in slots.
+    private long[] occupied = new long[0];
+    // Sum of slotHash over every used slot, so it is independent of the order the slots were filled in.
+    private long contentHash = 0;
+    // -1 when the layout is empty.
+    private int lowestUsedIndex = EMPTY;
+    private int highestUsedIndex = EMPTY;
+
+    // Reverse index: every item id's indexes form a doubly linked list threaded through these arrays, which are
+    // parallel to slots. The maps hold each item id's first index and its number of indexes.
+    private int[] nextIndexWithSameItem = new int[0];
+    private int[] previousIndexWithSameItem = new int[0];
+    private final IntIntHashMap firstIndexByItem = new IntIntHashMap(16, EMPTY);
+    private final IntIntHashMap countByItem = new IntIntHashMap(16, 0);
+
+    // Null unless enableJournal was called.
+    private LayoutJournal journal = null;
+    private boolean replayingJournal = false;
+    private int operationDepth = 0;
 
     public static Layout fromString(String layoutString) {
         return fromString(layoutString, false);
     }
 
+    /**
+     * Parses either the compact format written by {@link #toCompactString()}, or "itemId:index,itemId:index,..." in a
+     * single pass, without splitting the string. Pairs with a negative index are dropped. A malformed pair, or one whose
+     * index is above {@link #MAX_INDEX}, throws a NumberFormatException, or is skipped if ignoreNfe is set.
+     */
     public static Layout fromString(String layoutString, boolean ignoreNfe) {
+        LayoutCodecEvent event = new LayoutCodecEvent();
+        event.begin();
+        Layout layout = parse(layoutString, ignoreNfe);
+        if (event.shouldCommit()) {
+            event.operation = LayoutCodecEvent.PARSE;
+            event.inputSize = layoutString.length();
+            event.outputSize = layout.size();
+            event.commit();
+        }
+        return layout;
+    }
+
+    private static Layout parse(String layoutString, boolean ignoreNfe) {
+        if (CompactLayoutCodec.looksCompact(layoutString)) {
+            try {
+                return CompactLayoutCodec.decodeString(layoutString);
+            } catch (IllegalArgumentException e) {
+                // Not actually a compact layout; let the text parser report it.
+                log.debug("could not read compact layout \"{}\"", layoutString, e);
+            }
+        }
         Layout layout = Layout.emptyLayout();
-        if (layoutString.isEmpty()) return layout;
-        for (String s1 : layoutString.split(",")) {
-            String[] split = s1.split(":");
+        int end = layoutString.length();
+        // Like String.split, ignore trailing empty pairs.
+        while (end > 0 && layoutString.charAt(end - 1) == ',') end--;
+        int pairStart = 0;
+        while (pairStart < end) {
+            int pairEnd = indexOf(layoutString, ',', pairStart, end);
             try {
-                int itemId = Integer.parseInt(split[0]);
-                int index = Integer.parseInt(split[1]);
+                int colon = indexOf(layoutString, ':', pairStart, pairEnd);
+                if (colon == pairEnd) throw new NumberFormatException("missing index in pair at " + pairStart);
+                int itemId = Integer.parseInt(layoutString, pairStart, colon, 10);
+                int index = Integer.parseInt(layoutString, colon + 1, indexOf(layoutString, ':', colon + 1, pairEnd), 10);
+                if (index > MAX_INDEX) throw new NumberFormatException("index " + index + " is above " + MAX_INDEX);
                 if (index >= 0) {
                     layout.putItem(itemId, index);
                 } else {
-                    log.debug("Removed item " + itemId + " due to it having a negative index (" + index + ")");
+                    log.debug("Removed item {} due to it having a negative index ({})", itemId, index);
                 }
             } catch (NumberFormatException e) {
                 if (!ignoreNfe) throw e;
-                log.debug("input string \"" + layoutString + "\"");
+                log.debug("input string \"{}\"", layoutString);
             }
+            pairStart = pairEnd + 1;
         }
         return layout;
     }
 
+    /** Returns the index of c in s between from and end, or end if it isn't there. */
+    private static int indexOf(String s, char c, int from, int end) {
+        int i = s.indexOf(c, from);
+        return i == -1 || i > end ? end : i;
+    }
+
     public static Layout emptyLayout() {
         return new Layout();
     }
 
+    /** Returns a layout with the same contents. The copy does not share this layout's journal. */
+    public Layout copy() {
+        Layout copy = new Layout();
+        copy.ensureCapacity(highestUsedIndex + 1);
+        for (int index = nextUsedIndex(0); index != Integer.MAX_VALUE; index = nextUsedIndex(index + 1)) {
+            copy.putItem(slots[index], index);
+        }
+        return copy;
+    }
+
+    /**
+     * The string is canonical: it lists pairs in ascending index order, so layouts with the same contents always
+     * produce the same string.
+     */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<Integer, Integer> integerIntegerEntry : allPairs()) {
-            sb.append(integerIntegerEntry.getValue() + ":" + integerIntegerEntry.getKey() + ",");
+        LayoutCodecEvent event = new LayoutCodecEvent();
+        event.begin();
+        String s = appendTo(new StringBuilder(size * 10)).toString();
+        commitSerializeEvent(event, LayoutCodecEvent.SERIALIZE, s);
+        return s;
+    }
+
+    /** Writes the layout in the format read by {@link #fromString(String)}, in ascending index order. */
+    public StringBuilder appendTo(StringBuilder sb) {
+        int index = nextUsedIndex(0);
+        while (index < slots.length) {
+            sb.append(slots[index]).append(':').append(index);
+            index = nextUsedIndex(index + 1);
+            if (index < slots.length) sb.append(',');
         }
-        if (sb.length() > 0) {
-            sb.delete(sb.length() - 1, sb.length());
+        return sb;
+    }
+
+    /** Writes the layout in a compact url-safe Base64 form, which {@link #fromString(String)} also reads. */
+    public String toCompactString() {
+        LayoutCodecEvent event = new LayoutCodecEvent();
+        event.begin();
+        String s = CompactLayoutCodec.encodeToString(this);
+        commitSerializeEvent(event, LayoutCodecEvent.SERIALIZE_COMPACT, s);
+        return s;
+    }
+
+    private void commitSerializeEvent(LayoutCodecEvent event, String operation, String s) {
+        if (event.shouldCommit()) {
+            event.operation = operation;
+            event.inputSize = size;
+            event.outputSize = s.length();
+            event.commit();
         }
-        return sb.toString();
     }
 
+    /**
+     * Puts the item at the index, replacing whatever was there. An itemId of 0 or less clears the index instead.
+     * <p>
+     * This is narrower than the old map-backed layout, which stored any index including negative ones. A slot array
+     * can't hold those, so a negative index is now ignored and one above {@link #MAX_INDEX} is rejected. Neither can
+     * come out of a layout string, since {@link #fromString} has always dropped negative indexes.
+     *
+     * @throws IllegalArgumentException if index is above {@link #MAX_INDEX}.
+     */
     public void putItem(int itemId, int index) {
         if (itemId <= 0) {
-            layoutMap.remove(index);
+            clearIndex(index);
             return;
         }
-        layoutMap.put(index, itemId);
+        if (index < 0) {
+            log.debug("ignoring item {} at negative index {}", itemId, index);
+            return;
+        }
+        if (index > MAX_INDEX) throw new IllegalArgumentException("index " + index + " is above " + MAX_INDEX);
+        ensureCapacity(index + 1);
+        int previousItemId = slots[index];
+        if (previousItemId == itemId) return;
+        journal(index, previousItemId, itemId);
+        if (previousItemId == EMPTY) {
+            size++;
+            occupied[index >>> 6] |= 1L << index;
+            if (index > highestUsedIndex) highestUsedIndex = index;
+            if (index < lowestUsedIndex || lowestUsedIndex == EMPTY) lowestUsedIndex = index;
+        } else {
+            unlinkIndex(index, previousItemId);
+        }
+        slots[index] = itemId;
+        linkIndex(index, itemId);
     }
 
     /** returns -1 if there is no item there. */
     public int getItemAtIndex(int index) {
-        return layoutMap.getOrDefault(index, -1);
+        return index >= 0 && index < slots.length ? slots[index] : EMPTY;
+    }
+
+    /**
+     * A 64-bit hash of the layout's contents, kept up to date as the layout changes. Layouts with the same contents
+     * always have the same hash, so comparing hashes is a cheap way to tell that something changed.
+     */
+    public long getContentHash() {
+        return contentHash;
     }
 
+    /** Whether both layouts have an item with the same id at exactly the same indexes. */
+    public boolean contentEquals(Layout other) {
+        if (other == this) return true;
+        if (other.size != size || other.contentHash != contentHash) return false;
+        for (int index = nextUsedIndex(0); index < slots.length; index = nextUsedIndex(index + 1)) {
+            if (other.getItemAtIndex(index) != slots[index]) return false;
+        }
+        return true;
+    }
+
+    private static long slotHash(int index, int itemId) {
+        // The splitmix64 finalizer, so that similar slots don't produce similar hashes.
+        long h = ((long) index << 32) | (itemId & 0xFFFFFFFFL);
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+
+    /** The highest used index, or -1 if the layout is empty. */
+    public int getHighestUsedIndex() {
+        return highestUsedIndex;
+    }
+
+    /** The lowest used index, or -1 if the layout is empty. */
+    public int getLowestUsedIndex() {
+        return lowestUsedIndex;
+    }
+
+    /** The first bank row with an item in it, or -1 if the layout is empty. */
+    public int getFirstUsedRow() {
+        return lowestUsedIndex == EMPTY ? EMPTY : lowestUsedIndex / ROW_WIDTH;
+    }
+
+    /** The last bank row with an item in it, or -1 if the layout is empty. */
+    public int getLastUsedRow() {
+        return highestUsedIndex == EMPTY ? EMPTY : highestUsedIndex / ROW_WIDTH;
+    }
+
+    /** The first index of the first row after the last used row. */
+    public int getNextLinearSectionStart() {
+        return (getLastUsedRow() + 1) * ROW_WIDTH;
+    }
+
+    /**
+     * The first index of the first pair of rows after the last used pair, where pairs start on even rows. Zigzag
+     * sections fill a pair of rows at a time.
+     */
+    public int getNextZigzagSectionStart() {
+        return highestUsedIndex == EMPTY ? 0 : (highestUsedIndex / (ROW_WIDTH * 2) * 2 + 2) * ROW_WIDTH;
+    }
+
+    /** Number of used indexes. */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Calls the consumer with every (index, itemId) pair in ascending index order. Unlike {@link #allPairs()}, this
+     * does not box anything.
+     */
+    public void forEachPair(SlotConsumer consumer) {
+        for (int index = nextUsedIndex(0); index < slots.length; index = nextUsedIndex(index + 1)) {
+            consumer.accept(index, slots[index]);
+        }
+    }
+
+    /** Entries are keyed by index, with the item id as the value. They are created on demand, in index order. */
     public Iterator<Map.Entry<Integer, Integer>> allPairsIterator() {
-        return layoutMap.entrySet().iterator();
+        return new UsedIndexIterator<Map.Entry<Integer, Integer>>() {
+            @Override
+            Map.Entry<Integer, Integer> get(int index) {
+                return new AbstractMap.SimpleImmutableEntry<>(index, slots[index]);
+            }
+        };
     }
 
     /**
@@ -106,34 +322,61 @@ public class Layout {
      * If there's no index for this itemId, then it returns -1.
      */
     public Integer getIndexForItem(int itemId) {
-        return allPairs().stream()
-                .filter(e -> e.getValue() == itemId)
-                .map(e -> e.getKey())
-                .findAny().orElse(-1);
+        return firstIndexByItem.get(itemId);
     }
 
     /**
-     * Finds the indexes for the EXACT itemId. Does not factor in placeholders or variation items.
-     * If there're no indexes for this itemId, then it returns an empty list.
+     * Replaces every occurrence of the EXACT oldItemId with newItemId. Does not factor in placeholders or variation
+     * items.
      */
-    private List<Integer> getIndexesForItem(int itemId)
+    private void replaceItemId(int oldItemId, int newItemId)
     {
-        return allPairs().stream()
-                .filter(e -> e.getValue() == itemId)
-                .map(e -> e.getKey())
-                .collect(Collectors.toList());
+        if (oldItemId == newItemId) return;
+        int index;
+        while ((index = firstIndexByItem.get(oldItemId)) != EMPTY) {
+            putItem(newItemId, index);
+        }
     }
 
     public Collection<Integer> getAllUsedItemIds() {
-        return new HashSet<>(layoutMap.values());
+        Collection<Integer> itemIds = new HashSet<>();
+        forEachPair((index, itemId) -> itemIds.add(itemId));
+        return itemIds;
     }
 
+    /** A live view of the used indexes, in ascending order. */
     public Collection<Integer> getAllUsedIndexes() {
-        return layoutMap.keySet();
+        return new AbstractCollection<Integer>() {
+            @Override
+            public Iterator<Integer> iterator() {
+                return new UsedIndexIterator<Integer>() {
+                    @Override
+                    Integer get(int index) {
+                        return index;
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
+    /** A live view of the (index, itemId) pairs, in ascending index order. */
     public Collection<Map.Entry<Integer, Integer>> allPairs() {
-        return layoutMap.entrySet();
+        return new AbstractCollection<Map.Entry<Integer, Integer>>() {
+            @Override
+            public Iterator<Map.Entry<Integer, Integer>> iterator() {
+                return allPairsIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
     }
 
     public int getFirstEmptyIndex() {
@@ -141,21 +384,142 @@ public class Layout {
     }
 
     public int getFirstEmptyIndex(int afterThisIndex) {
-        List<Integer> indexes = new ArrayList<>(getAllUsedIndexes());
-        indexes.sort(Integer::compare);
-        for (Integer integer : indexes) {
-            if (integer < afterThisIndex) continue;
+        return getNextFreeIndexAfter(afterThisIndex);
+    }
 
-            if (integer - afterThisIndex > 1) {
-                break;
+    /** Returns the lowest unused index greater than afterThisIndex. */
+    public int getNextFreeIndexAfter(int afterThisIndex) {
+        int from = Math.max(afterThisIndex + 1, 0);
+        int word = from >>> 6;
+        if (word >= occupied.length) return from;
+        long free = ~occupied[word] & (-1L << from);
+        while (free == 0) {
+            if (++word == occupied.length) return word << 6;
+            free = ~occupied[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(free);
+    }
+
+    /** Counts the unused indexes in [fromIndex, toIndex). */
+    public int countFreeIndexes(int fromIndex, int toIndex) {
+        fromIndex = Math.max(fromIndex, 0);
+        if (toIndex <= fromIndex) return 0;
+        int used = 0;
+        int end = Math.min(toIndex, slots.length);
+        for (int word = fromIndex >>> 6; word << 6 < end; word++) {
+            long bits = occupied[word];
+            if (word == fromIndex >>> 6) bits &= -1L << fromIndex;
+            if (word == (end - 1) >>> 6) bits &= -1L >>> (63 - ((end - 1) & 63));
+            used += Long.bitCount(bits);
+        }
+        return toIndex - fromIndex - used;
+    }
+
+    /**
+     * Iterates over the unused indexes from fromIndex upwards, in ascending order. Every index past the end of the
+     * layout is unused, so the iterator only runs out at {@link Integer#MAX_VALUE}.
+     */
+    public PrimitiveIterator.OfInt freeIndexIterator(int fromIndex) {
+        return new PrimitiveIterator.OfInt() {
+            private int next = getNextFreeIndexAfter(fromIndex - 1);
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0 && next < Integer.MAX_VALUE;
             }
-            afterThisIndex = integer;
+
+            @Override
+            public int nextInt() {
+                if (!hasNext()) throw new NoSuchElementException();
+                int index = next;
+                next = getNextFreeIndexAfter(index);
+                return index;
+            }
+        };
+    }
+
+    /** Returns the highest used index at or before fromIndex, or -1 if there is none. */
+    private int previousUsedIndex(int fromIndex) {
+        if (fromIndex < 0) return EMPTY;
+        int word = fromIndex >>> 6;
+        long used = occupied[word] & (-1L >>> (63 - (fromIndex & 63)));
+        while (used == 0) {
+            if (--word < 0) return EMPTY;
+            used = occupied[word];
         }
-        return afterThisIndex + 1;
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(used);
+    }
+
+    /** Returns the lowest used index at or after fromIndex, or {@link Integer#MAX_VALUE} if there is none. */
+    int nextUsedIndex(int fromIndex) {
+        int word = fromIndex >>> 6;
+        if (word >= occupied.length) return Integer.MAX_VALUE;
+        long used = occupied[word] & (-1L << fromIndex);
+        while (used == 0) {
+            if (++word == occupied.length) return Integer.MAX_VALUE;
+            used = occupied[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(used);
     }
 
     public void clearIndex(int index) {
-        layoutMap.remove(index);
+        int itemId = getItemAtIndex(index);
+        if (itemId == EMPTY) return;
+        journal(index, itemId, EMPTY);
+        unlinkIndex(index, itemId);
+        slots[index] = EMPTY;
+        occupied[index >>> 6] &= ~(1L << index);
+        size--;
+        if (size == 0) {
+            lowestUsedIndex = highestUsedIndex = EMPTY;
+        } else {
+            if (index == highestUsedIndex) highestUsedIndex = previousUsedIndex(index - 1);
+            if (index == lowestUsedIndex) lowestUsedIndex = nextUsedIndex(index + 1);
+        }
+    }
+
+    private void linkIndex(int index, int itemId) {
+        contentHash += slotHash(index, itemId);
+        int first = firstIndexByItem.put(itemId, index);
+        nextIndexWithSameItem[index] = first;
+        previousIndexWithSameItem[index] = EMPTY;
+        if (first != EMPTY) previousIndexWithSameItem[first] = index;
+        countByItem.put(itemId, countByItem.get(itemId) + 1);
+    }
+
+    private void unlinkIndex(int index, int itemId) {
+        contentHash -= slotHash(index, itemId);
+        int next = nextIndexWithSameItem[index];
+        int previous = previousIndexWithSameItem[index];
+        if (previous != EMPTY) {
+            nextIndexWithSameItem[previous] = next;
+        } else if (next != EMPTY) {
+            firstIndexByItem.put(itemId, next);
+        } else {
+            firstIndexByItem.remove(itemId);
+        }
+        if (next != EMPTY) previousIndexWithSameItem[next] = previous;
+
+        int count = countByItem.get(itemId) - 1;
+        if (count == 0) {
+            countByItem.remove(itemId);
+        } else {
+            countByItem.put(itemId, count);
+        }
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= slots.length) return;
+        int oldLength = slots.length;
+        // Keep the length a multiple of 64 so that the occupancy words cover exactly the slots. Worked out in longs and
+        // capped, so doubling never overflows; MAX_INDEX + 1 is itself a multiple of 64.
+        long grown = Math.max((long) capacity, Math.max(oldLength * 2L, MIN_CAPACITY));
+        int newLength = (int) Math.min((grown + 63) & ~63L, MAX_INDEX + 1L);
+        slots = Arrays.copyOf(slots, newLength);
+        occupied = Arrays.copyOf(occupied, newLength >>> 6);
+        Arrays.fill(slots, oldLength, newLength, EMPTY);
+        nextIndexWithSameItem = Arrays.copyOf(nextIndexWithSameItem, newLength);
+        previousIndexWithSameItem = Arrays.copyOf(previousIndexWithSameItem, newLength);
     }
 
     /**
@@ -164,6 +528,15 @@ public class Layout {
      * @param draggedItemId the dragged item widget's item id.
      */
     public void moveItem(int draggedItemIndex, int targetIndex, int draggedItemId) {
+        beginOperation();
+        try {
+            moveItemInternal(draggedItemIndex, targetIndex, draggedItemId);
+        } finally {
+            endOperation();
+        }
+    }
+
+    private void moveItemInternal(int draggedItemIndex, int targetIndex, int draggedItemId) {
         int layoutItemId = getItemAtIndex(draggedItemIndex);
         if (draggedItemId == -1) { // dragging a layout placeholder, or bad input.
             draggedItemId = layoutItemId;
@@ -173,9 +546,7 @@ public class Layout {
             // different due to how variant items are assigned indexes), because the item the user sees themselves
             // moving is the item id in the widget, not the item id in the layout. Therefore, the duplicates must be
             // updated to use that id as well.
-            for (Integer index : getIndexesForItem(layoutItemId)) {
-                putItem(draggedItemId, index);
-            }
+            replaceItemId(layoutItemId, draggedItemId);
         }
 
         int targetItemId = getItemAtIndex(targetIndex);
@@ -190,23 +561,25 @@ public class Layout {
 
     public boolean isEmpty()
     {
-        return layoutMap.isEmpty();
+        return size == 0;
     }
 
     public int countItemsWithId(int idAtIndex)
     {
-        int count = 0;
-        for (Map.Entry<Integer, Integer> pair : allPairs())
-        {
-            if (pair.getValue() == idAtIndex) {
-                count++;
-            }
-        }
-        return count;
+        return countByItem.get(idAtIndex);
     }
 
-    // TODO create test.
     public void duplicateItem(int clickedItemIndex, int itemIdAtIndex)
+    {
+        beginOperation();
+        try {
+            duplicateItemInternal(clickedItemIndex, itemIdAtIndex);
+        } finally {
+            endOperation();
+        }
+    }
+
+    private void duplicateItemInternal(int clickedItemIndex, int itemIdAtIndex)
     {
         int duplicatedItemIndex = getFirstEmptyIndex(clickedItemIndex);
 
@@ -216,12 +589,97 @@ public class Layout {
             // Modifying a layout should always use the real item there, NOT the item id stored in the layout (which can
             // be different due to how variant items are assigned indexes).
             // Therefore, the duplicates must be updated to use that id as well.
-            List<Integer> indexesToChange = getIndexesForItem(layoutItemId);
-            for (Integer index : indexesToChange) {
-                putItem(itemIdAtIndex, index);
-            }
+            replaceItemId(layoutItemId, itemIdAtIndex);
         }
 
         putItem(itemIdAtIndex, duplicatedItemIndex);
     }
+
+    /**
+     * Starts recording mutations so that they can be undone and redone. A move or duplicate is undone as a single
+     * step, as is each direct putItem or clearIndex. Only the most recent capacity slot changes are kept.
+     */
+    public void enableJournal(int capacity) {
+        journal = new LayoutJournal(capacity);
+    }
+
+    public void disableJournal() {
+        journal = null;
+    }
+
+    public boolean canUndo() {
+        return journal != null && journal.canUndo();
+    }
+
+    public boolean canRedo() {
+        return journal != null && journal.canRedo();
+    }
+
+    /** Reverts the most recent mutation. Returns false if there is nothing to undo. */
+    public boolean undo() {
+        if (journal == null) return false;
+        replayingJournal = true;
+        try {
+            return journal.undo(this::setSlot);
+        } finally {
+            replayingJournal = false;
+        }
+    }
+
+    /** Reapplies the most recently undone mutation. Returns false if there is nothing to redo. */
+    public boolean redo() {
+        if (journal == null) return false;
+        replayingJournal = true;
+        try {
+            return journal.redo(this::setSlot);
+        } finally {
+            replayingJournal = false;
+        }
+    }
+
+    private void setSlot(int index, int itemId) {
+        if (itemId == EMPTY) {
+            clearIndex(index);
+        } else {
+            putItem(itemId, index);
+        }
+    }
+
+    private void beginOperation() {
+        if (operationDepth++ == 0 && journal != null) journal.startOperation();
+    }
+
+    private void endOperation() {
+        operationDepth--;
+    }
+
+    private void journal(int index, int oldItemId, int newItemId) {
+        if (journal == null || replayingJournal) return;
+        if (operationDepth == 0) journal.startOperation();
+        journal.record(index, oldItemId, newItemId);
+    }
+
+    @FunctionalInterface
+    public interface SlotConsumer {
+        void accept(int index, int itemId);
+    }
+
+    private abstract class UsedIndexIterator<T> implements Iterator<T> {
+        private int next = nextUsedIndex(0);
+
+        abstract T get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < slots.length;
+        }
+
+        @Override
+        public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            T t = get(next);
+            next = nextUsedIndex(next + 1);
+            return t;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering parsing or serializing a layout.
+ */
+@Name("com.hjdarnel.zigzag.LayoutCodec")
+@Label("Layout Parse/Serialize")
+@Category({"Zigzag Bank Tag Layout"})
+@Description("Converting a layout from or to another representation")
+@StackTrace(false)
+final class LayoutCodecEvent extends jdk.jfr.Event
+{
+	static final String PARSE = "parse";
+	static final String SERIALIZE = "serialize";
+	static final String SERIALIZE_COMPACT = "serialize compact";
+	static final String READ_TAB = "read tab layout";
+
+	@Label("Tag")
+	@Description("Null where the layout's tag isn't known")
+	String tag;
+
+	@Label("Operation")
+	String operation;
+
+	@Label("Input Size")
+	@Description("Characters of a parsed string, or slots of a serialized or read layout")
+	int inputSize;
+
+	@Label("Output Size")
+	@Description("Slots of a parsed or read layout, or characters of a serialized string")
+	int outputSize;
+}
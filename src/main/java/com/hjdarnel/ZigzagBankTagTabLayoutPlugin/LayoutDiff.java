@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+
+/**
+ * The slots that differ between two layouts, as parallel arrays of index, old item id and new item id. An item id of
+ * -1 means the slot is empty.
+ */
+public final class LayoutDiff
+{
+	private int[] indexes = new int[16];
+	private int[] oldItemIds = new int[16];
+	private int[] newItemIds = new int[16];
+	private int size = 0;
+
+	private LayoutDiff()
+	{
+	}
+
+	/**
+	 * Computes the changes that turn {@code from} into {@code to}, in ascending index order. Both layouts are walked
+	 * once, together, visiting only indexes that are used in at least one of them.
+	 */
+	public static LayoutDiff between(Layout from, Layout to)
+	{
+		LayoutDiff diff = new LayoutDiff();
+		int index = Math.min(from.nextUsedIndex(0), to.nextUsedIndex(0));
+		while (index != Integer.MAX_VALUE)
+		{
+			int oldItemId = from.getItemAtIndex(index);
+			int newItemId = to.getItemAtIndex(index);
+			if (oldItemId != newItemId)
+			{
+				diff.add(index, oldItemId, newItemId);
+			}
+			index = Math.min(from.nextUsedIndex(index + 1), to.nextUsedIndex(index + 1));
+		}
+		return diff;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isEmpty()
+	{
+		return size == 0;
+	}
+
+	public int getIndex(int change)
+	{
+		return indexes[change];
+	}
+
+	public int getOldItemId(int change)
+	{
+		return oldItemIds[change];
+	}
+
+	public int getNewItemId(int change)
+	{
+		return newItemIds[change];
+	}
+
+	/** Applies the changes to a layout equal to the diff's {@code from} layout, making it equal to {@code to}. */
+	public void applyTo(Layout layout)
+	{
+		LayoutMutationEvent event = new LayoutMutationEvent();
+		event.begin();
+		for (int i = 0; i < size; i++)
+		{
+			if (newItemIds[i] == -1)
+			{
+				layout.clearIndex(indexes[i]);
+			}
+			else
+			{
+				layout.putItem(newItemIds[i], indexes[i]);
+			}
+		}
+		commitMutationEvent(event, null, layout.size());
+	}
+
+	/** Applies the changes to a bank tags layout, touching only the slots that changed. */
+	public void applyTo(net.runelite.client.plugins.banktags.tabs.Layout layout)
+	{
+		LayoutMutationEvent event = new LayoutMutationEvent();
+		event.begin();
+		for (int i = 0; i < size; i++)
+		{
+			layout.setItemAtPos(newItemIds[i], indexes[i]);
+		}
+		commitMutationEvent(event, layout.getTag(), -1);
+	}
+
+	private void commitMutationEvent(LayoutMutationEvent event, String tag, int outputSlots)
+	{
+		if (event.shouldCommit())
+		{
+			event.tag = tag;
+			event.operation = LayoutMutationEvent.APPLY_DIFF;
+			event.slotsChanged = size;
+			event.outputSlots = outputSlots;
+			event.commit();
+		}
+	}
+
+	private void add(int index, int oldItemId, int newItemId)
+	{
+		if (size == indexes.length)
+		{
+			indexes = Arrays.copyOf(indexes, size * 2);
+			oldItemIds = Arrays.copyOf(oldItemIds, size * 2);
+			newItemIds = Arrays.copyOf(newItemIds, size * 2);
+		}
+		indexes[size] = index;
+		oldItemIds[size] = oldItemId;
+		newItemIds[size] = newItemId;
+		size++;
+	}
+}
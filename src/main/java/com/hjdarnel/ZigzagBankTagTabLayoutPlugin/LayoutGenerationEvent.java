@@ -0,0 +1,75 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A flight recorder event covering one auto-layout generation, including the cache lookups in front of it.
+ */
+@Name("com.hjdarnel.zigzag.LayoutGeneration")
+@Label("Layout Generation")
+@Category({"Zigzag Bank Tag Layout"})
+@Description("Generating an auto-layout for a bank tag")
+@StackTrace(false)
+final class LayoutGenerationEvent extends jdk.jfr.Event
+{
+	static final String GENERATED = "generated";
+	static final String MEMORY_CACHE = "memory cache";
+	static final String LAYOUT_STORE = "layout store";
+
+	@Label("Tag")
+	String tag;
+
+	@Label("Source")
+	@Description("Where the layout came from: generated, memory cache or layout store")
+	String source;
+
+	@Label("Equipped Items")
+	int equippedItems;
+
+	@Label("Inventory Slots")
+	int inventorySlots;
+
+	@Label("Rune Pouch Runes")
+	int runePouchRunes;
+
+	@Label("Additional Items")
+	int additionalItems;
+
+	@Label("Current Layout Slots")
+	int currentSlots;
+
+	@Label("Output Slots")
+	int outputSlots;
+
+	@Label("Displaced Items")
+	@Description("Items from the current layout that were moved to make room, 0 unless generated")
+	int displacedItems;
+}
@@ -27,163 +27,324 @@ package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
 
 import java.util.*;
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
-import java.util.stream.Collectors;
-
-import net.runelite.api.ItemID;
-import net.runelite.client.game.ItemVariationMapping;
-
+/**
+ * Generation works on int arrays and reuses its scratch buffers between calls, so that an auto-layout allocates little
+ * more than the layout it returns. Because of those buffers, a generator must not be used by two threads at once.
+ */
 @Slf4j
-@RequiredArgsConstructor
 public class LayoutGenerator {
-	private final ZigzagBankTagTabLayoutPlugin plugin;
+	/**
+	 * Bump whenever a change makes generateLayout return a different layout for the same inputs, so that layouts stored
+	 * by an older version are thrown away instead of being served. Changes to the client's item variation data are
+	 * covered separately, by {@link #layoutVersion}.
+	 */
+	static final int VERSION = 1;
+
+	/**
+	 * The version stored layouts are kept under. Layouts also depend on the client's
+	 * {@link net.runelite.client.game.ItemVariationMapping} data, which ships with the client, so the client version is
+	 * part of it. Placeholder links come from the game cache instead, and are assumed never to change for an existing
+	 * item.
+	 */
+	static int layoutVersion(String clientVersion)
+	{
+		return 31 * VERSION + Objects.hashCode(clientVersion);
+	}
+
+	private ItemResolver itemResolver;
+	private final ItemVariationTable variations;
+	private final GeneratedLayoutCache generatedLayouts = new GeneratedLayoutCache(32);
+	// Null when layouts aren't persisted. Set and cleared on the plugin's executor, so read it once per use.
+	private volatile LayoutStore layoutStore = null;
+	// Null unless metrics are being recorded. Set from the client thread, so read it once per use.
+	private volatile AutoLayoutMetrics metrics = null;
+	private long variantResolutionNanos;
+	private int slotsPlaced;
+	private int itemsDisplaced;
+
+	private int[] equippedBuffer = new int[0];
+	private final InventoryRuns inventoryRuns = new InventoryRuns();
+	private final IntHashSet seenItemIds = new IntHashSet(32);
+	// Variation base ids of everything in the preview layout, so that displaced items can be checked with one probe.
+	private final IntHashSet previewBaseIds = new IntHashSet(256);
+	private final IntArrayDeque displacedItems = new IntArrayDeque(64);
+
+	public LayoutGenerator(ItemResolver itemResolver) {
+		this.itemResolver = itemResolver;
+		this.variations = new ItemVariationTable(itemResolver);
+	}
 
 	public Layout basicBankTagLayout(List<Integer> equippedItems, List<Integer> inventory, List<Integer> runePouch, List<Integer> additionalItems, Layout currentLayout, int duplicateLimit) {
-		return generateLayout(equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
+		return basicBankTagLayout(toIntArray(equippedItems), toIntArray(inventory), toIntArray(runePouch), toIntArray(additionalItems), currentLayout, duplicateLimit);
+	}
+
+	/**
+	 * Same as {@link #generateLayout}, but returns a remembered layout when given the same inputs as a recent call, or
+	 * as any call stored in the layout store.
+	 */
+	public Layout basicBankTagLayout(int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit) {
+		return basicBankTagLayout(null, equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
+	}
+
+	/** @param tag the name of the tag being laid out, only used to label flight recorder events. May be null. */
+	public Layout basicBankTagLayout(String tag, int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit) {
+		LayoutGenerationEvent event = new LayoutGenerationEvent();
+		event.begin();
+		long fingerprint = GeneratedLayoutCache.fingerprint(equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
+		String source = LayoutGenerationEvent.MEMORY_CACHE;
+		LayoutStore layoutStore = this.layoutStore;
+		itemsDisplaced = 0;
+		Layout layout = generatedLayouts.get(fingerprint);
+		if (layout == null) {
+			source = LayoutGenerationEvent.LAYOUT_STORE;
+			layout = layoutStore != null ? layoutStore.get(fingerprint) : null;
+			if (layout == null) {
+				source = LayoutGenerationEvent.GENERATED;
+				layout = generateLayout(equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
+				if (layoutStore != null) layoutStore.put(fingerprint, layout);
+			}
+			generatedLayouts.put(fingerprint, layout);
+		}
+
+		commitGenerationEvent(event, tag, source, equippedItems, inventory, runePouch, additionalItems, currentLayout, layout, itemsDisplaced);
+		return layout;
+	}
+
+	private static void commitGenerationEvent(LayoutGenerationEvent event, String tag, String source, int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, Layout layout, int displacedItems) {
+		if (event.shouldCommit()) {
+			event.tag = tag;
+			event.source = source;
+			event.equippedItems = equippedItems.length;
+			event.inventorySlots = inventory.length;
+			event.runePouchRunes = runePouch != null ? runePouch.length : 0;
+			event.additionalItems = additionalItems.length;
+			event.currentSlots = currentLayout.size();
+			event.outputSlots = layout.size();
+			event.displacedItems = displacedItems;
+			event.commit();
+		}
+	}
+
+	void setLayoutStore(LayoutStore layoutStore) {
+		this.layoutStore = layoutStore;
+	}
+
+	void setMetrics(AutoLayoutMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	/**
+	 * Replaces the lookups of canonical and non-placeholder ids, e.g. with ids resolved ahead of time so that generation
+	 * can run on another thread. Variation lookups keep using the resolver the generator was created with.
+	 */
+	void setItemResolver(ItemResolver itemResolver) {
+		this.itemResolver = itemResolver;
+	}
+
+	/**
+	 * Returns the layout a recent call to {@link #basicBankTagLayout} generated from the same inputs, or null. Only
+	 * looks in memory, so it is cheap, and safe to call while another thread is generating. A hit is recorded as a
+	 * memory cache generation event; a miss records nothing, since the basicBankTagLayout that follows records its own.
+	 *
+	 * @param tag the name of the tag being laid out, only used to label flight recorder events. May be null.
+	 */
+	Layout getRememberedLayout(String tag, int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit) {
+		LayoutGenerationEvent event = new LayoutGenerationEvent();
+		event.begin();
+		// A miss here is followed by basicBankTagLayout, which counts it.
+		Layout layout = generatedLayouts.getIfPresent(GeneratedLayoutCache.fingerprint(equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit));
+		if (layout != null) {
+			commitGenerationEvent(event, tag, LayoutGenerationEvent.MEMORY_CACHE, equippedItems, inventory, runePouch, additionalItems, currentLayout, layout, 0);
+		}
+		return layout;
+	}
+
+	GeneratedLayoutCache getGeneratedLayouts() {
+		return generatedLayouts;
 	}
 
 	public Layout generateLayout(List<Integer> equippedItems, List<Integer> inventory, List<Integer> runePouch, List<Integer> additionalItems, Layout currentLayout, int duplicateLimit) {
+		return generateLayout(toIntArray(equippedItems), toIntArray(inventory), toIntArray(runePouch), toIntArray(additionalItems), currentLayout, duplicateLimit);
+	}
+
+	public Layout generateLayout(int[] equippedItems, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit) {
 		if (!hasRunePouch(inventory)) {
 			runePouch = null;
 		}
-		equippedItems = equippedItems.stream()
-			.map(itemId -> plugin.itemManager.canonicalize(itemId)) // Weight reducing items have different ids when equipped; this fixes that.
-			.collect(Collectors.toList());
-
-				return zigzagLayout(equippedItems, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
-
+		equippedBuffer = ensureCapacity(equippedBuffer, equippedItems.length);
+		for (int i = 0; i < equippedItems.length; i++) {
+			// Weight reducing items have different ids when equipped; this fixes that.
+			equippedBuffer[i] = itemResolver.canonicalize(equippedItems[i]);
+		}
 
+		return zigzagLayout(equippedBuffer, equippedItems.length, inventory, runePouch, additionalItems, currentLayout, duplicateLimit);
 	}
 
-	private boolean hasRunePouch(List<Integer> inventory)
+	private boolean hasRunePouch(int[] inventory)
 	{
-		Collection<Integer> runePouchVariations = ItemVariationMapping.getVariations(ItemID.RUNE_POUCH);
-		Collection<Integer> divineRunePouchVariations = ItemVariationMapping.getVariations(ItemID.DIVINE_RUNE_POUCH);
-		return inventory.stream().anyMatch(itemId -> runePouchVariations.contains(itemId) || divineRunePouchVariations.contains(itemId));
+		for (int itemId : inventory)
+		{
+			if (variations.isRunePouch(itemId))
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 
 	public Layout zigzagLayout(List<Integer> equippedItems, List<Integer> inventory, List<Integer> runePouch, List<Integer> additionalItems, Layout currentLayout, int duplicateLimit) {
-		Layout previewLayout = Layout.emptyLayout();
-		List<Integer> displacedItems = new ArrayList<>();
+		int[] equipped = toIntArray(equippedItems);
+		return zigzagLayout(equipped, equipped.length, toIntArray(inventory), toIntArray(runePouch), toIntArray(additionalItems), currentLayout, duplicateLimit);
+	}
 
-		log.debug("generate layout");
-		log.debug("equipped gear is " + equippedItems);
-		log.debug("inventory is " + inventory);
+	/**
+	 * @param equippedItems only the first equippedCount entries are used.
+	 * @param runePouch null to leave out the rune pouch section.
+	 */
+	public Layout zigzagLayout(int[] equippedItems, int equippedCount, int[] inventory, int[] runePouch, int[] additionalItems, Layout currentLayout, int duplicateLimit) {
+		Layout previewLayout = Layout.emptyLayout();
+		displacedItems.clear();
+		previewBaseIds.clear();
+		variantResolutionNanos = 0;
+		slotsPlaced = 0;
+
+		if (log.isDebugEnabled()) {
+			log.debug("generate layout");
+			log.debug("equipped gear is {}", Arrays.toString(Arrays.copyOf(equippedItems, equippedCount)));
+			log.debug("inventory is {}", Arrays.toString(inventory));
+		}
 
 		int i = 0;
 
 		// lay out equipped items.
-		i = layoutItems(equippedItems, currentLayout, previewLayout, displacedItems, i, true);
-
-		inventory = inventory.stream().filter(integer -> integer != -1).collect(Collectors.toList());
+		i = layoutItems(equippedItems, equippedCount, currentLayout, previewLayout, i, true);
 
 		// lay out the inventory items.
-		if (duplicateLimit <= 0)
-		{
-			// distinct leaves the first duplicate it encounters and removes only duplicates coming after the first.
-			inventory = inventory.stream().distinct().collect(Collectors.toList());
-		}
-		else
-		{
-			inventory = limitDuplicates(inventory, duplicateLimit);
-		}
-
-		i = layoutItems(inventory, currentLayout, previewLayout, displacedItems, i, true);
+		i = layoutInventory(inventoryRuns.encode(inventory), duplicateLimit, currentLayout, previewLayout, i);
 
 		if (runePouch != null)
 		{
-			i = layoutItems(runePouch, currentLayout, previewLayout, displacedItems, i, false);
+			i = layoutItems(runePouch, runePouch.length, currentLayout, previewLayout, i, false);
 		}
 
-		i = layoutItems(additionalItems, currentLayout, previewLayout, displacedItems, i, false);
+		i = layoutItems(additionalItems, additionalItems.length, currentLayout, previewLayout, i, false);
 
 		int displacedItemsStart = i;
 
 		// copy items from current layout into the empty spots.
-		for (Map.Entry<Integer, Integer> itemPosition : currentLayout.allPairs()) {
-			int index = itemPosition.getKey();
-			int currentItemAtIndex = itemPosition.getValue();
+		for (int index = currentLayout.nextUsedIndex(0); index != Integer.MAX_VALUE; index = currentLayout.nextUsedIndex(index + 1)) {
+			int currentItemAtIndex = currentLayout.getItemAtIndex(index);
 			int previewItemAtIndex = previewLayout.getItemAtIndex(index);
 
-			if (currentItemAtIndex != -1 && previewItemAtIndex == -1) {
+			if (previewItemAtIndex == -1) {
 				previewLayout.putItem(currentItemAtIndex, index);
+				previewBaseIds.add(getBaseId(currentItemAtIndex));
 			}
 		}
 
 		// Remove items that were placed as part of the gear or inventory.
-		displacedItems = displacedItems.stream().filter(id -> !layoutContainsItem(id, previewLayout)).collect(Collectors.toList());
-
-		int j = displacedItemsStart;
-		while (displacedItems.size() > 0 && j < 2000 / 38 * 8) {
-			int currentItemAtIndex = currentLayout.getItemAtIndex(j);
-			if (currentItemAtIndex == -1) {
-				Integer itemId = displacedItems.remove(0);
-				previewLayout.putItem(itemId, j);
+		for (int remaining = displacedItems.size(); remaining > 0; remaining--) {
+			int itemId = displacedItems.pollFirst();
+			if (!previewBaseIds.contains(getBaseId(itemId))) {
+				displacedItems.addLast(itemId);
 			}
+		}
 
-			j++;
+		// Past displacedItemsStart the preview holds only what was copied from the current layout, so its free slots are
+		// exactly the current layout's free slots there.
+		PrimitiveIterator.OfInt freeIndexes = previewLayout.freeIndexIterator(displacedItemsStart);
+		itemsDisplaced = displacedItems.size();
+		while (!displacedItems.isEmpty()) {
+			previewLayout.putItem(displacedItems.pollFirst(), freeIndexes.nextInt());
 		}
 
+		AutoLayoutMetrics metrics = this.metrics;
+		if (metrics != null) {
+			metrics.record(AutoLayoutMetrics.Phase.VARIANT_RESOLUTION, variantResolutionNanos);
+			metrics.addSlotsPlaced(slotsPlaced);
+			metrics.addItemsDisplaced(itemsDisplaced);
+		}
 		return previewLayout;
 	}
 
-	private List<Integer> limitDuplicates(List<Integer> inventory, int duplicateLimit)
+	/**
+	 * Lays out the inventory straight from its runs. With a duplicate limit of 0 or less, only the first occurrence of
+	 * each item is placed. Otherwise a run longer than the limit is placed once, and shorter runs are placed in full.
+	 */
+	private int layoutInventory(InventoryRuns runs, int duplicateLimit, Layout currentLayout, Layout previewLayout, int i)
 	{
-		List<Map.Entry<Integer, Integer>> groupedInventory = new ArrayList<>();
-
-		int inARow = 0;
-		int lastItemId = -1;
-		for (Integer itemId : inventory)
+		seenItemIds.clear();
+		for (int run = 0; run < runs.getRunCount(); run++)
 		{
-			if (lastItemId != itemId)
+			int itemId = runs.getItemId(run);
+			int quantity;
+			if (duplicateLimit <= 0)
 			{
-				int quantity = inARow > duplicateLimit ? 1 : inARow;
-				groupedInventory.add(new AbstractMap.SimpleEntry<>(lastItemId, quantity));
-				inARow = 0;
+				quantity = seenItemIds.add(itemId) ? 1 : 0;
 			}
-			inARow++;
+			else
+			{
+				quantity = runs.getLength(run) > duplicateLimit ? 1 : runs.getLength(run);
+			}
+			for (int q = 0; q < quantity; q++)
+			{
+				placeItem(itemId, currentLayout, previewLayout, i++, true);
+			}
+		}
+		return endSection(runs.getRunCount(), previewLayout, i, true);
+	}
 
-			lastItemId = itemId;
+	private int layoutItems(int[] items, int count, Layout currentLayout, Layout previewLayout, int i, boolean useZigZag) {
+		for (int n = 0; n < count; n++) {
+			int itemId = items[n];
+			if (itemId == -1) continue;
+			placeItem(itemId, currentLayout, previewLayout, i++, useZigZag);
 		}
-		int quantity = inARow > duplicateLimit ? 1 : inARow;
-		if (quantity > 0) groupedInventory.add(new AbstractMap.SimpleEntry<>(lastItemId, quantity));
+		return endSection(count, previewLayout, i, useZigZag);
+	}
 
-		inventory = groupedInventory.stream().flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream()).collect(Collectors.toList());
-		return inventory;
+	private void placeItem(int itemId, Layout currentLayout, Layout previewLayout, int i, boolean useZigZag) {
+		int index = useZigZag ? toZigZagIndex(i, 0, 0) : i;
+		previewLayout.putItem(itemId, index);
+		slotsPlaced++;
+		previewBaseIds.add(getBaseId(itemId));
+		int currentLayoutItem = currentLayout.getItemAtIndex(index);
+		if (currentLayoutItem != -1) displacedItems.addLast(currentLayoutItem);
 	}
 
-	private int layoutItems(List<Integer> inventory, Layout currentLayout, Layout previewLayout, List<Integer> displacedItems, int i, boolean useZigZag) {
-		for (Integer itemId : inventory) {
-			if (itemId == -1) continue;
-			int index = useZigZag ? toZigZagIndex(i, 0, 0) : i;
-			previewLayout.putItem(itemId, index);
-			int currentLayoutItem = currentLayout.getItemAtIndex(index);
-			if (currentLayoutItem != -1) displacedItems.add(currentLayoutItem);
-			i++;
-		}
-		if (!inventory.isEmpty()) {
-			Optional<Integer> highestUsedIndex = previewLayout.getAllUsedIndexes().stream().max(Integer::compare);
-			if (highestUsedIndex.isPresent()) {
-				if (useZigZag) {
-					i = (highestUsedIndex.get() / 16 * 2 + 2) * 8;
-				} else {
-					i = (highestUsedIndex.get() / 8 + 1) * 8;
-				}
-			}
+	/** Returns where the next section starts, or i if this section had no entries at all. */
+	private int endSection(int entries, Layout previewLayout, int i, boolean useZigZag) {
+		if (entries > 0 && !previewLayout.isEmpty()) {
+			i = useZigZag ? previewLayout.getNextZigzagSectionStart() : previewLayout.getNextLinearSectionStart();
 		}
 		return i;
 	}
 
-	private boolean layoutContainsItem(int id, Layout previewLayout) {
-		int baseId = ItemVariationMapping.map(plugin.getNonPlaceholderId(id));
-		for (Integer item : previewLayout.getAllUsedItemIds()) {
-			if (baseId == ItemVariationMapping.map(plugin.getNonPlaceholderId(item))) {
-				return true;
-			}
+	/** The id that an item, its placeholder and all of its variations have in common. */
+	private int getBaseId(int itemId) {
+		if (metrics == null) {
+			return variations.getBaseId(itemResolver.getNonPlaceholderId(itemId));
 		}
-		return false;
+		long start = System.nanoTime();
+		int baseId = variations.getBaseId(itemResolver.getNonPlaceholderId(itemId));
+		variantResolutionNanos += System.nanoTime() - start;
+		return baseId;
+	}
+
+	private static int[] ensureCapacity(int[] buffer, int capacity) {
+		return buffer.length >= capacity ? buffer : new int[Math.max(capacity, buffer.length * 2)];
+	}
+
+	/** Returns null for a null list. */
+	private static int[] toIntArray(List<Integer> items) {
+		if (items == null) return null;
+		int[] array = new int[items.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = items.get(i);
+		}
+		return array;
 	}
 
 	private static int toZigZagIndex(int inventoryIndex, int row, int col) {
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+/**
+ * A fixed-capacity ring buffer of slot changes, grouped into operations, for undoing and redoing {@link Layout}
+ * mutations. Each change is three ints, so memory use depends only on the capacity and never on the layout's size.
+ * When the buffer is full, the oldest operation is dropped as a whole.
+ */
+final class LayoutJournal
+{
+	// Set on a record's index when it is the first change of an operation. Indexes are never negative.
+	private static final int OPERATION_START = 0x80000000;
+
+	private final int[] indexes;
+	private final int[] oldItemIds;
+	private final int[] newItemIds;
+
+	// Positions in the sequence of all records ever written; a record's slot in the arrays is its position modulo the
+	// capacity. Records in [start, cursor) are applied, and records in [cursor, end) have been undone.
+	private long start = 0;
+	private long cursor = 0;
+	private long end = 0;
+
+	private boolean nextRecordStartsOperation = true;
+	// Whether the operation being recorded no longer fits, in which case the rest of it is not recorded either.
+	private boolean discardingOperation = false;
+
+	LayoutJournal(int capacity)
+	{
+		if (capacity <= 0)
+		{
+			throw new IllegalArgumentException("capacity must be positive");
+		}
+		indexes = new int[capacity];
+		oldItemIds = new int[capacity];
+		newItemIds = new int[capacity];
+	}
+
+	void startOperation()
+	{
+		nextRecordStartsOperation = true;
+	}
+
+	void record(int index, int oldItemId, int newItemId)
+	{
+		boolean operationStart = nextRecordStartsOperation;
+		nextRecordStartsOperation = false;
+		if (operationStart)
+		{
+			discardingOperation = false;
+		}
+		else if (discardingOperation)
+		{
+			return;
+		}
+
+		// A new change makes the undone changes unreachable.
+		end = cursor;
+		if (end - start == indexes.length)
+		{
+			dropOldestOperation();
+			if (start == end && !operationStart)
+			{
+				// The oldest operation was the one being recorded.
+				discardingOperation = true;
+				return;
+			}
+		}
+
+		int slot = slot(end);
+		indexes[slot] = operationStart ? index | OPERATION_START : index;
+		oldItemIds[slot] = oldItemId;
+		newItemIds[slot] = newItemId;
+		cursor = ++end;
+	}
+
+	boolean canUndo()
+	{
+		return cursor > start;
+	}
+
+	boolean canRedo()
+	{
+		return cursor < end;
+	}
+
+	/** Reverts the most recent applied operation through the consumer. */
+	boolean undo(Layout.SlotConsumer setSlot)
+	{
+		if (!canUndo())
+		{
+			return false;
+		}
+		int slot;
+		do
+		{
+			slot = slot(--cursor);
+			setSlot.accept(indexes[slot] & ~OPERATION_START, oldItemIds[slot]);
+		}
+		while ((indexes[slot] & OPERATION_START) == 0 && cursor > start);
+		return true;
+	}
+
+	/** Reapplies the most recently undone operation through the consumer. */
+	boolean redo(Layout.SlotConsumer setSlot)
+	{
+		if (!canRedo())
+		{
+			return false;
+		}
+		do
+		{
+			int slot = slot(cursor++);
+			setSlot.accept(indexes[slot] & ~OPERATION_START, newItemIds[slot]);
+		}
+		while (cursor < end && (indexes[slot(cursor)] & OPERATION_START) == 0);
+		return true;
+	}
+
+	void clear()
+	{
+		start = cursor = end = 0;
+		nextRecordStartsOperation = true;
+		discardingOperation = false;
+	}
+
+	private void dropOldestOperation()
+	{
+		do
+		{
+			start++;
+		}
+		while (start < end && (indexes[slot(start)] & OPERATION_START) == 0);
+	}
+
+	private int slot(long position)
+	{
+		return (int) (position % indexes.length);
+	}
+}
@@ -0,0 +1,556 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Generated layouts on disk, keyed by the fingerprint of the inputs that produced them, so that they survive client
+ * restarts.
+ *
+ * The directory holds an append-only data file of records (fingerprint, payload length, CRC32, compact layout bytes),
+ * an index file, and a CURRENT file naming which data and index files are live. The index is an open-addressing table
+ * of (fingerprint, data offset) slots that is memory-mapped, and updated in place when a layout is stored. It is only
+ * rewritten into a new file when it grows, or when the data file is compacted or reset; the new files are forced to
+ * disk and then published by atomically renaming a new CURRENT into place. Records are checked against their
+ * fingerprint and checksum when read, so a crash can at worst lose the most recent layouts.
+ *
+ * The index header records a layout version, and a store written with another one starts over, since its layouts may no
+ * longer be what the generator would produce. The version has to cover everything generation depends on besides its
+ * inputs: the generator's code, and the item variation data the client ships with. A lock file keeps two clients from
+ * using the same directory at once.
+ *
+ * Lookups happen on the caller's thread; writes happen on the executor given to {@link #open}.
+ */
+@Slf4j
+final class LayoutStore
+{
+	private static final int INDEX_MAGIC = 0x5A5A4C49; // "ZZLI"
+	private static final int INDEX_VERSION = 2;
+	// Magic, index format version, layout version, capacity.
+	private static final int INDEX_HEADER_SIZE = 16;
+	private static final int SLOT_SIZE = 16;
+	private static final int MIN_INDEX_CAPACITY = 256;
+	private static final int MAX_ENTRIES = 1 << 14;
+	private static final int RECORD_HEADER_SIZE = 16;
+	private static final int MAX_PAYLOAD_SIZE = 1 << 20;
+	private static final long MIN_COMPACTION_SIZE = 1 << 20;
+
+	private final Path directory;
+	private final int layoutVersion;
+	private final Executor writeExecutor;
+
+	private FileChannel lockChannel;
+	private FileLock lock;
+	private int dataGeneration;
+	private int indexGeneration;
+	private FileChannel data;
+	private MappedByteBuffer index;
+	private int indexCapacity;
+	private int indexCount;
+	// Bytes of the data file taken up by records the index still points at.
+	private long liveBytes;
+
+	private LayoutStore(Path directory, int layoutVersion, Executor writeExecutor)
+	{
+		this.directory = directory;
+		this.layoutVersion = layoutVersion;
+		this.writeExecutor = writeExecutor;
+	}
+
+	/**
+	 * @param layoutVersion stored layouts are thrown away unless they were written with the same version.
+	 * @throws IOException if the directory can't be used, including when another client has the store open.
+	 */
+	static LayoutStore open(File directory, int layoutVersion, Executor writeExecutor) throws IOException
+	{
+		LayoutStore store = new LayoutStore(directory.toPath(), layoutVersion, writeExecutor);
+		Files.createDirectories(store.directory);
+		store.lock();
+		try
+		{
+			store.load();
+		}
+		catch (IOException | RuntimeException e)
+		{
+			store.close();
+			throw e;
+		}
+		return store;
+	}
+
+	/** @return the stored layout, or null if there is none or it couldn't be read. */
+	synchronized Layout get(long fingerprint)
+	{
+		if (index == null)
+		{
+			return null;
+		}
+		int slot = findSlot(index, indexCapacity, fingerprint);
+		long offset = index.getLong(slotPosition(slot) + 8) - 1;
+		if (offset < 0)
+		{
+			return null;
+		}
+		try
+		{
+			return readRecord(fingerprint, offset);
+		}
+		catch (IOException | IllegalArgumentException e)
+		{
+			log.debug("could not read stored layout {}", fingerprint, e);
+			return null;
+		}
+	}
+
+	/** Stores the layout in the background. The layout is encoded right away, so the caller may keep modifying it. */
+	void put(long fingerprint, Layout layout)
+	{
+		byte[] payload = CompactLayoutCodec.encode(layout);
+		writeExecutor.execute(() ->
+		{
+			try
+			{
+				write(fingerprint, payload);
+			}
+			catch (IOException e)
+			{
+				log.warn("could not store layout", e);
+			}
+		});
+	}
+
+	synchronized void close()
+	{
+		closeFiles();
+		try
+		{
+			if (lock != null)
+			{
+				lock.release();
+			}
+			if (lockChannel != null)
+			{
+				lockChannel.close();
+			}
+		}
+		catch (IOException e)
+		{
+			log.debug("could not unlock layout store", e);
+		}
+		lock = null;
+		lockChannel = null;
+	}
+
+	private void closeFiles()
+	{
+		try
+		{
+			if (index != null)
+			{
+				index.force();
+			}
+			if (data != null)
+			{
+				data.close();
+			}
+		}
+		catch (IOException | RuntimeException e)
+		{
+			log.debug("could not close layout store", e);
+		}
+		data = null;
+		index = null;
+	}
+
+	private void lock() throws IOException
+	{
+		lockChannel = FileChannel.open(directory.resolve("LOCK"), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+		try
+		{
+			lock = lockChannel.tryLock();
+		}
+		catch (OverlappingFileLockException e)
+		{
+			lock = null;
+		}
+		if (lock == null)
+		{
+			lockChannel.close();
+			lockChannel = null;
+			throw new IOException("layout store " + directory + " is in use by another client");
+		}
+	}
+
+	private void load() throws IOException
+	{
+		Path current = directory.resolve("CURRENT");
+		if (Files.exists(current))
+		{
+			try
+			{
+				String[] generations = new String(Files.readAllBytes(current), StandardCharsets.UTF_8).trim().split(" ");
+				dataGeneration = Integer.parseInt(generations[0]);
+				indexGeneration = Integer.parseInt(generations[1]);
+				data = FileChannel.open(dataFile(dataGeneration), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+				mapIndex();
+				if (index.getInt(8) == layoutVersion)
+				{
+					liveBytes = countLiveBytes();
+					deleteStaleFiles();
+					return;
+				}
+				log.debug("layout store was written with layout version {}, starting over", index.getInt(8));
+				closeFiles();
+			}
+			catch (IOException | RuntimeException e)
+			{
+				log.warn("layout store is unreadable, starting over", e);
+				closeFiles();
+			}
+		}
+		reset(dataGeneration + 1, indexGeneration + 1);
+	}
+
+	/** Maps the index named by indexGeneration for reading and writing, and counts its entries. */
+	private void mapIndex() throws IOException
+	{
+		try (FileChannel channel = FileChannel.open(indexFile(indexGeneration), StandardOpenOption.READ, StandardOpenOption.WRITE))
+		{
+			MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+			if (mapped.capacity() < INDEX_HEADER_SIZE || mapped.getInt(0) != INDEX_MAGIC || mapped.getInt(4) != INDEX_VERSION)
+			{
+				throw new IOException("not a layout index");
+			}
+			int capacity = mapped.getInt(12);
+			if (Integer.bitCount(capacity) != 1 || mapped.capacity() != INDEX_HEADER_SIZE + (long) capacity * SLOT_SIZE)
+			{
+				throw new IOException("corrupt layout index");
+			}
+			// Counted rather than kept in the header, since slots are updated in place and a crash could leave a
+			// stored count out of step with them.
+			int count = 0;
+			for (int slot = 0; slot < capacity; slot++)
+			{
+				if (mapped.getLong(slotPosition(slot) + 8) != 0)
+				{
+					count++;
+				}
+			}
+			index = mapped;
+			indexCapacity = capacity;
+			indexCount = count;
+		}
+	}
+
+	/** Publishes a new, empty data file and index. */
+	private void reset(int newDataGeneration, int newIndexGeneration) throws IOException
+	{
+		FileChannel newData = FileChannel.open(dataFile(newDataGeneration), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		writeIndex(newIndexGeneration, newIndexBuffer(MIN_INDEX_CAPACITY));
+		publish(newDataGeneration, newIndexGeneration, newData);
+		liveBytes = 0;
+	}
+
+	private synchronized void write(long fingerprint, byte[] payload) throws IOException
+	{
+		if (data == null)
+		{
+			return;
+		}
+		if (indexCount >= MAX_ENTRIES)
+		{
+			reset(dataGeneration + 1, indexGeneration + 1);
+		}
+
+		int slot = findSlot(index, indexCapacity, fingerprint);
+		long previousOffset = index.getLong(slotPosition(slot) + 8) - 1;
+		long offset = data.size();
+		ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+		CRC32 crc = new CRC32();
+		crc.update(payload);
+		record.putLong(fingerprint).putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+		while (record.hasRemaining())
+		{
+			data.write(record, offset + record.position());
+		}
+
+		if (previousOffset >= 0)
+		{
+			liveBytes -= storedSize(previousOffset);
+		}
+		else
+		{
+			indexCount++;
+		}
+		liveBytes += record.capacity();
+		// The fingerprint goes in before the offset, so a slot with an offset always has its fingerprint.
+		index.putLong(slotPosition(slot), fingerprint);
+		index.putLong(slotPosition(slot) + 8, offset + 1);
+
+		if (indexCount * 2 > indexCapacity)
+		{
+			grow();
+		}
+		else if (data.size() > MIN_COMPACTION_SIZE && data.size() > 4 * liveBytes)
+		{
+			compact();
+		}
+	}
+
+	/** Rewrites the index at twice the capacity, keeping the data file. */
+	private void grow() throws IOException
+	{
+		int capacity = indexCapacity * 2;
+		ByteBuffer newIndex = newIndexBuffer(capacity);
+		for (int slot = 0; slot < indexCapacity; slot++)
+		{
+			long offsetPlusOne = index.getLong(slotPosition(slot) + 8);
+			if (offsetPlusOne != 0)
+			{
+				insert(newIndex, capacity, index.getLong(slotPosition(slot)), offsetPlusOne);
+			}
+		}
+		writeIndex(indexGeneration + 1, newIndex);
+		publish(dataGeneration, indexGeneration + 1, data);
+	}
+
+	/** Copies the live records into a new data file, dropping the ones that were overwritten or can't be read. */
+	private void compact() throws IOException
+	{
+		int newDataGeneration = dataGeneration + 1;
+		FileChannel newData = FileChannel.open(dataFile(newDataGeneration), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		ByteBuffer newIndex = newIndexBuffer(indexCapacity);
+		long newOffset = 0;
+		for (int slot = 0; slot < indexCapacity; slot++)
+		{
+			long offset = index.getLong(slotPosition(slot) + 8) - 1;
+			int size = offset < 0 ? 0 : storedSize(offset);
+			if (size == 0)
+			{
+				continue;
+			}
+			ByteBuffer record = readFully(offset, size);
+			while (record.hasRemaining())
+			{
+				newData.write(record, newOffset + record.position());
+			}
+			insert(newIndex, indexCapacity, index.getLong(slotPosition(slot)), newOffset + 1);
+			newOffset += size;
+		}
+		writeIndex(indexGeneration + 1, newIndex);
+		publish(newDataGeneration, indexGeneration + 1, newData);
+		liveBytes = newOffset;
+	}
+
+	private long countLiveBytes()
+	{
+		long live = 0;
+		for (int slot = 0; slot < indexCapacity; slot++)
+		{
+			long offset = index.getLong(slotPosition(slot) + 8) - 1;
+			if (offset >= 0)
+			{
+				live += storedSize(offset);
+			}
+		}
+		return live;
+	}
+
+	/**
+	 * Forces the new files to disk, atomically switches CURRENT over to them, then starts using them. The forces come
+	 * first so that CURRENT never names files whose contents are still only in memory.
+	 */
+	private void publish(int newDataGeneration, int newIndexGeneration, FileChannel newData) throws IOException
+	{
+		newData.force(true);
+		Path tmp = directory.resolve("CURRENT.tmp");
+		try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			ByteBuffer generations = ByteBuffer.wrap((newDataGeneration + " " + newIndexGeneration).getBytes(StandardCharsets.UTF_8));
+			while (generations.hasRemaining())
+			{
+				channel.write(generations);
+			}
+			channel.force(true);
+		}
+		Files.move(tmp, directory.resolve("CURRENT"), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+		if (newData != data && data != null)
+		{
+			data.close();
+		}
+		data = newData;
+		dataGeneration = newDataGeneration;
+		indexGeneration = newIndexGeneration;
+		mapIndex();
+		deleteStaleFiles();
+	}
+
+	private void writeIndex(int generation, ByteBuffer newIndex) throws IOException
+	{
+		newIndex.rewind();
+		try (FileChannel channel = FileChannel.open(indexFile(generation), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE))
+		{
+			while (newIndex.hasRemaining())
+			{
+				channel.write(newIndex);
+			}
+			channel.force(true);
+		}
+	}
+
+	/**
+	 * Deletes data and index files that CURRENT no longer names. Files that are still mapped can't be deleted on
+	 * some platforms, so failures are ignored; they are retried the next time.
+	 */
+	private void deleteStaleFiles()
+	{
+		File[] files = directory.toFile().listFiles();
+		if (files == null)
+		{
+			return;
+		}
+		for (File file : files)
+		{
+			String name = file.getName();
+			boolean stale = (name.endsWith(".dat") && !file.toPath().equals(dataFile(dataGeneration)))
+				|| (name.endsWith(".idx") && !file.toPath().equals(indexFile(indexGeneration)));
+			if (stale && !file.delete())
+			{
+				log.debug("could not delete stale layout store file {}", file);
+			}
+		}
+	}
+
+	/** @return the size of the record at offset, header included, or 0 if it can't be read. */
+	private int storedSize(long offset)
+	{
+		try
+		{
+			int length = readFully(offset, RECORD_HEADER_SIZE).getInt(8);
+			if (length >= 0 && length <= MAX_PAYLOAD_SIZE && offset + RECORD_HEADER_SIZE + length <= data.size())
+			{
+				return RECORD_HEADER_SIZE + length;
+			}
+		}
+		catch (IOException e)
+		{
+			log.debug("could not read stored layout at {}", offset, e);
+		}
+		return 0;
+	}
+
+	private Layout readRecord(long fingerprint, long offset) throws IOException
+	{
+		ByteBuffer header = readFully(offset, RECORD_HEADER_SIZE);
+		int length = header.getInt(8);
+		if (header.getLong(0) != fingerprint || length < 0 || length > MAX_PAYLOAD_SIZE)
+		{
+			throw new IOException("corrupt layout record");
+		}
+		ByteBuffer payload = readFully(offset + RECORD_HEADER_SIZE, length);
+		CRC32 crc = new CRC32();
+		crc.update(payload.array());
+		if ((int) crc.getValue() != header.getInt(12))
+		{
+			throw new IOException("layout record checksum mismatch");
+		}
+		return CompactLayoutCodec.decode(payload.array(), 0, length);
+	}
+
+	private ByteBuffer readFully(long offset, int length) throws IOException
+	{
+		if (offset + length > data.size())
+		{
+			throw new IOException("layout record past end of data");
+		}
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining())
+		{
+			if (data.read(buffer, offset + buffer.position()) < 0)
+			{
+				throw new IOException("unexpected end of layout data");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private ByteBuffer newIndexBuffer(int capacity)
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(INDEX_HEADER_SIZE + capacity * SLOT_SIZE);
+		buffer.putInt(0, INDEX_MAGIC).putInt(4, INDEX_VERSION).putInt(8, layoutVersion).putInt(12, capacity);
+		return buffer;
+	}
+
+	private static void insert(ByteBuffer index, int capacity, long fingerprint, long offsetPlusOne)
+	{
+		int slot = findSlot(index, capacity, fingerprint);
+		index.putLong(slotPosition(slot), fingerprint);
+		index.putLong(slotPosition(slot) + 8, offsetPlusOne);
+	}
+
+	/** Returns the slot holding the fingerprint, or the empty slot where it would go. */
+	private static int findSlot(ByteBuffer index, int capacity, long fingerprint)
+	{
+		int mask = capacity - 1;
+		int slot = (int) (fingerprint ^ (fingerprint >>> 32)) & mask;
+		while (index.getLong(slotPosition(slot) + 8) != 0 && index.getLong(slotPosition(slot)) != fingerprint)
+		{
+			slot = (slot + 1) & mask;
+		}
+		return slot;
+	}
+
+	private static int slotPosition(int slot)
+	{
+		return INDEX_HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	private Path dataFile(int generation)
+	{
+		return directory.resolve("layouts-" + generation + ".dat");
+	}
+
+	private Path indexFile(int generation)
+	{
+		return directory.resolve("layouts-" + generation + ".idx");
+	}
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+/**
+ * Item lookups answered from ids resolved ahead of time, so that a layout can be generated away from the client thread.
+ * Immutable once built. An id that wasn't resolved resolves to itself.
+ */
+final class ResolvedItems implements ItemResolver
+{
+	private final IntIntHashMap canonicalIds;
+	private final IntIntHashMap nonPlaceholderIds;
+
+	private ResolvedItems(int expectedSize)
+	{
+		canonicalIds = new IntIntHashMap(expectedSize, -1);
+		nonPlaceholderIds = new IntIntHashMap(expectedSize, -1);
+	}
+
+	/**
+	 * Resolves everything generating a layout from these inputs can look up: the canonical ids of the equipped items,
+	 * and the non-placeholder ids of those and of every other item. Must be called on the client thread if resolver
+	 * needs it.
+	 */
+	static ResolvedItems resolve(ItemResolver resolver, int[] equippedItems, int[] inventory, int[] runePouch, Layout currentLayout)
+	{
+		ResolvedItems items = new ResolvedItems(equippedItems.length + inventory.length + runePouch.length + currentLayout.size());
+		for (int itemId : equippedItems)
+		{
+			if (itemId >= 0 && !items.canonicalIds.containsKey(itemId))
+			{
+				int canonicalId = resolver.canonicalize(itemId);
+				items.canonicalIds.put(itemId, canonicalId);
+				items.resolveNonPlaceholderId(resolver, canonicalId);
+			}
+		}
+		for (int itemId : inventory)
+		{
+			items.resolveNonPlaceholderId(resolver, itemId);
+		}
+		for (int itemId : runePouch)
+		{
+			items.resolveNonPlaceholderId(resolver, itemId);
+		}
+		currentLayout.forEachPair((index, itemId) -> items.resolveNonPlaceholderId(resolver, itemId));
+		return items;
+	}
+
+	private void resolveNonPlaceholderId(ItemResolver resolver, int itemId)
+	{
+		if (itemId >= 0 && !nonPlaceholderIds.containsKey(itemId))
+		{
+			nonPlaceholderIds.put(itemId, resolver.getNonPlaceholderId(itemId));
+		}
+	}
+
+	@Override
+	public int canonicalize(int itemId)
+	{
+		int canonicalId = canonicalIds.get(itemId);
+		return canonicalId != -1 ? canonicalId : itemId;
+	}
+
+	@Override
+	public int getNonPlaceholderId(int itemId)
+	{
+		int nonPlaceholderId = nonPlaceholderIds.get(itemId);
+		return nonPlaceholderId != -1 ? nonPlaceholderId : itemId;
+	}
+}
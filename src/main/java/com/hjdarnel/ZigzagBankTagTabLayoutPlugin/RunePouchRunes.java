@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2025, hjdarnel
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *
+ * 1. Redistributions of source code must retain the above copyright notice, this
+ *    list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright notice,
+ *    this list of conditions and the following disclaimer in the documentation
+ *    and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import net.runelite.api.Client;
+import net.runelite.api.EnumComposition;
+import net.runelite.api.EnumID;
+import net.runelite.api.Varbits;
+
+/**
+ * The item ids of the runes in the rune pouch, kept up to date from VarbitChanged events so that reading them doesn't
+ * touch the client. All methods must be called on the client thread.
+ */
+final class RunePouchRunes
+{
+	private static final int[] AMOUNT_VARBITS = {Varbits.RUNE_POUCH_AMOUNT1, Varbits.RUNE_POUCH_AMOUNT2, Varbits.RUNE_POUCH_AMOUNT3, Varbits.RUNE_POUCH_AMOUNT4};
+	private static final int[] RUNE_VARBITS = {Varbits.RUNE_POUCH_RUNE1, Varbits.RUNE_POUCH_RUNE2, Varbits.RUNE_POUCH_RUNE3, Varbits.RUNE_POUCH_RUNE4};
+
+	private final int[] amounts = new int[AMOUNT_VARBITS.length];
+	private final int[] runeIds = new int[RUNE_VARBITS.length];
+	private EnumComposition runepouchEnum;
+	private boolean initialized = false;
+	// Rebuilt on every change, so a returned array never changes.
+	private int[] runeItemIds = new int[0];
+
+	/** Forgets the contents, for when changes may have been missed. */
+	void invalidate()
+	{
+		initialized = false;
+	}
+
+	void onVarbitChanged(Client client, int varbitId, int value)
+	{
+		if (!initialized)
+		{
+			return;
+		}
+		for (int i = 0; i < AMOUNT_VARBITS.length; i++)
+		{
+			if (varbitId == AMOUNT_VARBITS[i])
+			{
+				amounts[i] = value;
+				rebuild(client);
+				return;
+			}
+			if (varbitId == RUNE_VARBITS[i])
+			{
+				runeIds[i] = value;
+				rebuild(client);
+				return;
+			}
+		}
+	}
+
+	/** The item ids of the runes in the pouch's non-empty slots. Must not be modified. */
+	int[] getRuneItemIds(Client client)
+	{
+		if (!initialized)
+		{
+			for (int i = 0; i < AMOUNT_VARBITS.length; i++)
+			{
+				amounts[i] = client.getVarbitValue(AMOUNT_VARBITS[i]);
+				runeIds[i] = client.getVarbitValue(RUNE_VARBITS[i]);
+			}
+			initialized = true;
+			rebuild(client);
+		}
+		return runeItemIds;
+	}
+
+	private void rebuild(Client client)
+	{
+		if (runepouchEnum == null)
+		{
+			runepouchEnum = client.getEnum(EnumID.RUNEPOUCH_RUNE);
+		}
+		int count = 0;
+		for (int amount : amounts)
+		{
+			if (amount > 0)
+			{
+				count++;
+			}
+		}
+		int[] runes = new int[count];
+		count = 0;
+		for (int i = 0; i < amounts.length; i++)
+		{
+			if (amounts[i] > 0)
+			{
+				runes[count++] = runepouchEnum.getIntValue(runeIds[i]);
+			}
+		}
+		runeItemIds = runes;
+	}
+}
@@ -64,4 +64,15 @@ public interface ZigzagBankTagTabLayoutConfig extends Config
 	{
 		return true;
 	}
+
+	@ConfigItem(
+		keyName = "autoLayoutMetricsEnabled",
+		name = "Record auto-layout timings",
+		description = "Debug option. Records how long each part of auto-layout takes and shows it in an overlay. Type ::zigzagstats to print the numbers, or ::zigzagstats reset to clear them.",
+		position = 3
+	)
+	default boolean autoLayoutMetricsEnabled()
+	{
+		return false;
+	}
 }
@@ -26,35 +26,37 @@
 package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
 
 import com.google.inject.Provides;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
-import java.util.stream.Collectors;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ScheduledExecutorService;
 import javax.inject.Inject;
 import lombok.extern.slf4j.Slf4j;
 import net.runelite.api.ChatMessageType;
 import net.runelite.api.Client;
-import net.runelite.api.EnumComposition;
-import net.runelite.api.EnumID;
 import net.runelite.api.InventoryID;
-import net.runelite.api.Item;
 import net.runelite.api.ItemComposition;
-import net.runelite.api.ItemContainer;
-import net.runelite.api.Varbits;
+import net.runelite.api.events.CommandExecuted;
+import net.runelite.api.events.ItemContainerChanged;
+import net.runelite.api.events.VarbitChanged;
+import net.runelite.client.RuneLite;
+import net.runelite.client.RuneLiteProperties;
+import net.runelite.client.callback.ClientThread;
 import net.runelite.client.config.ConfigManager;
+import net.runelite.client.eventbus.Subscribe;
+import net.runelite.client.events.ConfigChanged;
 import net.runelite.client.game.ItemManager;
 import net.runelite.client.plugins.Plugin;
 import net.runelite.client.plugins.PluginDependency;
 import net.runelite.client.plugins.PluginDescriptor;
+import net.runelite.client.plugins.bank.BankSearch;
 import net.runelite.client.plugins.banktags.BankTagsPlugin;
 import net.runelite.client.plugins.banktags.tabs.LayoutManager;
+import net.runelite.client.ui.overlay.OverlayManager;
 
 @Slf4j
 @PluginDescriptor(name = "Zigzag Layout For Bank Tag Tabs", description = "Right click a bank tag tab, and click \"Enable layout\", then right click again and chose Auto layout: Zigzag", tags = {"bank", "tag", "layout"})
 @PluginDependency(BankTagsPlugin.class)
-public class ZigzagBankTagTabLayoutPlugin extends Plugin
+public class ZigzagBankTagTabLayoutPlugin extends Plugin implements ItemResolver
 {
 	@Inject
 	public Client client;
@@ -66,9 +68,40 @@ public class ZigzagBankTagTabLayoutPlugin extends Plugin
 	public ZigzagBankTagTabLayoutConfig config;
 	@Inject
 	public LayoutManager layoutManager;
+	@Inject
+	private ScheduledExecutorService executor;
+	@Inject
+	private ClientThread clientThread;
+	@Inject
+	private BankSearch bankSearch;
+	@Inject
+	private OverlayManager overlayManager;
+	@Inject
+	private AutoLayoutMetricsOverlay metricsOverlay;
 
+	// Only used on the executor, apart from looking up remembered layouts.
 	private final LayoutGenerator layoutGenerator = new LayoutGenerator(this);
 
+	// Placeholder to real item mappings don't change while the client is running, so these are never invalidated. Every
+	// item in a tag is resolved on the client thread before generating, so this is sized to hold even very large tags.
+	private final IntLruCache nonPlaceholderIds = new IntLruCache(16384, -1);
+	// Equipped to inventory item id mappings, e.g. for weight reducing items. These don't change either.
+	private final IntLruCache canonicalIds = new IntLruCache(256, -1);
+
+	// Only touched on the executor. Opening and closing the store there, behind its queued writes, means that turning the
+	// plugin off and on again never has two stores open on the same directory.
+	private LayoutStore layoutStore;
+
+	private final ItemContainerSnapshot equipment = new ItemContainerSnapshot();
+	private final ItemContainerSnapshot inventory = new ItemContainerSnapshot();
+	private final RunePouchRunes runePouchRunes = new RunePouchRunes();
+
+	// Null unless the debug option to record auto-layout timings is on. Also read by background generation.
+	private volatile AutoLayoutMetrics metrics = null;
+
+	// Generates auto-layouts that weren't remembered on the executor, and applies them back on the client thread.
+	private AutoLayoutRunner autoLayoutRunner;
+
 	@Provides
 	ZigzagBankTagTabLayoutConfig provideConfig(ConfigManager configManager)
 	{
@@ -78,80 +111,337 @@ public class ZigzagBankTagTabLayoutPlugin extends Plugin
 	@Override
 	protected void startUp()
 	{
+		executor.execute(this::openLayoutStore);
+		autoLayoutRunner = new AutoLayoutRunner(executor, clientThread::invoke, new AutoLayoutHost());
+
+		// Container changes may have been missed while the plugin was off.
+		equipment.invalidate();
+		inventory.invalidate();
+		runePouchRunes.invalidate();
+		setMetricsEnabled(config.autoLayoutMetricsEnabled());
+
 		layoutManager.unregisterAutoLayout("Zigzag");
-		layoutManager.registerAutoLayout(this, "Zigzag", currentLayout -> {
-			List<Integer> equippedGear = getEquippedGear();
-			List<Integer> inventory = getInventory();
-			if (equippedGear.stream().noneMatch(id -> id > 0) && inventory.stream().noneMatch(id -> id > 0))
+		layoutManager.registerAutoLayout(this, "Zigzag", this::autoLayout);
+	}
+
+	@Override
+	protected void shutDown()
+	{
+		autoLayoutRunner.cancel();
+		setMetricsEnabled(false);
+		executor.execute(this::closeLayoutStore);
+	}
+
+	/** Runs on the executor. */
+	private void openLayoutStore()
+	{
+		try
+		{
+			layoutStore = LayoutStore.open(new File(RuneLite.RUNELITE_DIR, "zigzag-layouts"), LayoutGenerator.layoutVersion(RuneLiteProperties.getVersion()), executor);
+			layoutGenerator.setLayoutStore(layoutStore);
+		}
+		catch (IOException e)
+		{
+			log.warn("could not open the layout store, generated layouts won't be remembered across sessions", e);
+		}
+	}
+
+	/** Runs on the executor, after the writes queued so far. */
+	private void closeLayoutStore()
+	{
+		layoutGenerator.setLayoutStore(null);
+		if (layoutStore != null)
+		{
+			layoutStore.close();
+			layoutStore = null;
+		}
+	}
+
+	@Subscribe
+	public void onItemContainerChanged(ItemContainerChanged event)
+	{
+		if (event.getContainerId() == InventoryID.EQUIPMENT.getId())
+		{
+			equipment.update(event.getItemContainer());
+			// Resolve new gear now so that generating a layout doesn't have to.
+			for (int itemId : equipment.getItemIds())
 			{
-				client.addChatMessage(ChatMessageType.GAMEMESSAGE, "bla", "This feature uses your equipped items and inventory to automatically create a bank tag layout, but you don't have any items equipped or in your inventory.", "bla");
-				return null;
+				canonicalize(itemId);
 			}
+		}
+		else if (event.getContainerId() == InventoryID.INVENTORY.getId())
+		{
+			inventory.update(event.getItemContainer());
+		}
+	}
+
+	@Subscribe
+	public void onConfigChanged(ConfigChanged event)
+	{
+		if (event.getGroup().equals("ZigzagBankTagTabLayoutPlugin") && event.getKey().equals("autoLayoutMetricsEnabled"))
+		{
+			setMetricsEnabled(config.autoLayoutMetricsEnabled());
+		}
+	}
+
+	@Subscribe
+	public void onCommandExecuted(CommandExecuted event)
+	{
+		if (!event.getCommand().equalsIgnoreCase("zigzagstats"))
+		{
+			return;
+		}
+		if (metrics == null)
+		{
+			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "Turn on \"Record auto-layout timings\" in the Zigzag layout settings first.", "");
+			return;
+		}
+		if (event.getArguments().length > 0 && event.getArguments()[0].equalsIgnoreCase("reset"))
+		{
+			metrics.reset();
+			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", "Auto-layout timings cleared.", "");
+			return;
+		}
+		for (String line : metrics.summarize())
+		{
+			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "", line, "");
+			log.info("auto-layout {}", line);
+		}
+	}
+
+	@Subscribe
+	public void onVarbitChanged(VarbitChanged event)
+	{
+		runePouchRunes.onVarbitChanged(client, event.getVarbitId(), event.getValue());
+	}
+
+	/**
+	 * Runs on the client thread. If the same layout was generated recently, returns it for the layout manager to save
+	 * like any other auto-layout. Otherwise captures everything generation needs, including item lookups that need the
+	 * client, and returns null: the layout is generated on the executor and saved by {@link #applyAutoLayout} once it is
+	 * done, since by then the layout manager is no longer waiting for it.
+	 */
+	private net.runelite.client.plugins.banktags.tabs.Layout autoLayout(net.runelite.client.plugins.banktags.tabs.Layout currentLayout)
+	{
+		AutoLayoutMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		int[] equippedGear = getEquippedGear();
+		int[] inventory = getInventory();
+		if (!containsAnyItem(equippedGear) && !containsAnyItem(inventory))
+		{
+			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "bla", "This feature uses your equipped items and inventory to automatically create a bank tag layout, but you don't have any items equipped or in your inventory.", "bla");
+			return null;
+		}
+		int[] runes = config.autoLayoutIncludeRunePouchRunes() ? runePouchRunes.getRuneItemIds(client) : new int[0];
+		if (metrics != null)
+		{
+			long now = System.nanoTime();
+			metrics.record(AutoLayoutMetrics.Phase.CONTAINER_READ, now - start);
+			start = now;
+		}
+
+		Layout l = readTabLayout(currentLayout);
+		int duplicateLimit = getAutoLayoutDuplicateLimit();
+		long conversionNanos = metrics == null ? 0 : System.nanoTime() - start;
+
+		autoLayoutRunner.cancel();
+		Layout rememberedLayout = layoutGenerator.getRememberedLayout(currentLayout.getTag(), equippedGear, inventory, runes, new int[0], l, duplicateLimit);
+		if (rememberedLayout != null)
+		{
+			return toTabLayout(currentLayout, l, rememberedLayout, conversionNanos);
+		}
+
+		AutoLayoutRequest request = new AutoLayoutRequest(currentLayout.getTag(), currentLayout.getLayout().clone(), l,
+			equippedGear, inventory, runes, duplicateLimit, ResolvedItems.resolve(this, equippedGear, inventory, runes, l),
+			equipment.getVersion(), this.inventory.getVersion(), conversionNanos);
+		autoLayoutRunner.submit(request);
+		return null;
+	}
+
+	/**
+	 * Runs on the client thread. Saves a layout generated in the background to the tab and lays out the bank again, if
+	 * anything changed.
+	 */
+	private void applyAutoLayout(net.runelite.client.plugins.banktags.tabs.Layout currentLayout, Layout l, Layout previewLayout, long conversionNanos)
+	{
+		net.runelite.client.plugins.banktags.tabs.Layout l2 = toTabLayout(currentLayout, l, previewLayout, conversionNanos);
+		if (l2 != null)
+		{
+			layoutManager.saveLayout(l2);
+			bankSearch.layoutBank();
+		}
+	}
+
+	/**
+	 * Returns a copy of the tab's layout with only the slots that differ between l and previewLayout rewritten, or null
+	 * with a chat message if there is nothing to change.
+	 */
+	private net.runelite.client.plugins.banktags.tabs.Layout toTabLayout(net.runelite.client.plugins.banktags.tabs.Layout currentLayout, Layout l, Layout previewLayout, long conversionNanos)
+	{
+		AutoLayoutMetrics metrics = this.metrics;
+		long start = metrics == null ? 0 : System.nanoTime();
+		net.runelite.client.plugins.banktags.tabs.Layout l2 = null;
+		if (previewLayout.contentEquals(l))
+		{
+			client.addChatMessage(ChatMessageType.GAMEMESSAGE, "bla", "This bank tag layout already matches your equipped items and inventory.", "bla");
+		}
+		else
+		{
+			l2 = new net.runelite.client.plugins.banktags.tabs.Layout(currentLayout.getTag(), currentLayout.getLayout().clone());
+			LayoutDiff.between(l, previewLayout).applyTo(l2);
+		}
+		if (metrics != null)
+		{
+			metrics.record(AutoLayoutMetrics.Phase.CONVERSION, conversionNanos + System.nanoTime() - start);
+		}
+		log.debug("non-placeholder id cache: {} hits, {} misses", nonPlaceholderIds.getHits(), nonPlaceholderIds.getMisses());
+		log.debug("canonical id cache: {} hits, {} misses", canonicalIds.getHits(), canonicalIds.getMisses());
+		log.debug("generated layout cache hit rate: {}", layoutGenerator.getGeneratedLayouts().getHitRate());
+		return l2;
+	}
 
-			Layout l = new Layout();
-			for (int i = 0; i < currentLayout.getLayout().length; i++)
+	/** Whether the equipment or inventory changed since the request was made. Safe to call from any thread. */
+	private boolean isStale(AutoLayoutRequest request)
+	{
+		return equipment.getVersion() != request.getEquipmentVersion() || inventory.getVersion() != request.getInventoryVersion();
+	}
+
+	private class AutoLayoutHost implements AutoLayoutRunner.Host
+	{
+		@Override
+		public Layout generate(AutoLayoutRequest request)
+		{
+			AutoLayoutMetrics metrics = ZigzagBankTagTabLayoutPlugin.this.metrics;
+			long start = metrics == null ? 0 : System.nanoTime();
+			layoutGenerator.setItemResolver(request.getResolvedItems());
+			Layout previewLayout = layoutGenerator.basicBankTagLayout(request.getTag(), request.getEquippedItems(), request.getInventory(),
+				request.getRunePouch(), new int[0], request.getCurrentLayout(), request.getDuplicateLimit());
+			if (metrics != null)
 			{
-				int itemId = currentLayout.getLayout()[i];
-				if (itemId == -1)
-				{
-					continue;
-				}
-				l.putItem(itemId, i);
+				metrics.record(AutoLayoutMetrics.Phase.GENERATION, System.nanoTime() - start);
 			}
+			return previewLayout;
+		}
 
-			Layout previewLayout = layoutGenerator.basicBankTagLayout(equippedGear, inventory, config.autoLayoutIncludeRunePouchRunes() ? getRunePouchRunes() : Collections.emptyList(), Collections.emptyList(), l, getAutoLayoutDuplicateLimit());
-			net.runelite.client.plugins.banktags.tabs.Layout l2 = new net.runelite.client.plugins.banktags.tabs.Layout(currentLayout.getTag());
-			for (Map.Entry<Integer, Integer> pair : previewLayout.allPairs())
+		@Override
+		public boolean isStale(AutoLayoutRequest request)
+		{
+			return ZigzagBankTagTabLayoutPlugin.this.isStale(request);
+		}
+
+		@Override
+		public net.runelite.client.plugins.banktags.tabs.Layout loadTabLayout(String tag)
+		{
+			return layoutManager.loadLayout(tag);
+		}
+
+		@Override
+		public void apply(AutoLayoutRequest request, net.runelite.client.plugins.banktags.tabs.Layout savedLayout, Layout previewLayout)
+		{
+			applyAutoLayout(savedLayout, request.getCurrentLayout(), previewLayout, request.getConversionNanos());
+		}
+
+		@Override
+		public void discard(AutoLayoutRequest request, AutoLayoutRunner.Discard reason)
+		{
+			switch (reason)
 			{
-				l2.setItemAtPos(pair.getValue(), pair.getKey());
+				case STALE:
+					client.addChatMessage(ChatMessageType.GAMEMESSAGE, "bla", "Your items or the bank tag layout changed while the auto-layout was being made, so it wasn't applied. Please try again.", "bla");
+					break;
+				case FAILED:
+					client.addChatMessage(ChatMessageType.GAMEMESSAGE, "bla", "Something went wrong while making the auto-layout, so it wasn't applied. Please try again.", "bla");
+					break;
+				case TAB_DELETED:
+					// The player removed the tag, so there is nothing to tell them.
+					break;
 			}
-			return l2;
-		});
+		}
 	}
 
-	private List<Integer> getEquippedGear()
+	/** Must be called on the client thread. The array must not be modified. */
+	private int[] getEquippedGear()
 	{
-		ItemContainer container = client.getItemContainer(InventoryID.EQUIPMENT);
-		if (container == null)
-		{
-			return Collections.emptyList();
-		}
-		return Arrays.stream(container.getItems()).map(Item::getId).collect(Collectors.toList());
+		return getSnapshot(equipment, InventoryID.EQUIPMENT).getItemIds();
 	}
 
 	/**
 	 * empty spaces before an item are always -1, empty spaces after an item may be -1 or may not be included in the
-	 * list at all.
+	 * array at all.
+	 *
+	 * Must be called on the client thread. The array must not be modified.
 	 */
-	private List<Integer> getInventory()
+	private int[] getInventory()
 	{
-		ItemContainer container = client.getItemContainer(InventoryID.INVENTORY);
-		if (container == null)
+		return getSnapshot(inventory, InventoryID.INVENTORY).getItemIds();
+	}
+
+	private ItemContainerSnapshot getSnapshot(ItemContainerSnapshot snapshot, InventoryID inventoryID)
+	{
+		if (!snapshot.isInitialized())
 		{
-			return Collections.emptyList();
+			snapshot.update(client.getItemContainer(inventoryID));
 		}
-		return Arrays.stream(container.getItems()).map(w -> w.getId()).collect(Collectors.toList());
+		return snapshot;
 	}
 
-	private static final int[] AMOUNT_VARBITS = {Varbits.RUNE_POUCH_AMOUNT1, Varbits.RUNE_POUCH_AMOUNT2, Varbits.RUNE_POUCH_AMOUNT3, Varbits.RUNE_POUCH_AMOUNT4};
-	private static final int[] RUNE_VARBITS = {Varbits.RUNE_POUCH_RUNE1, Varbits.RUNE_POUCH_RUNE2, Varbits.RUNE_POUCH_RUNE3, Varbits.RUNE_POUCH_RUNE4};
+	private static boolean containsAnyItem(int[] itemIds)
+	{
+		for (int itemId : itemIds)
+		{
+			if (itemId > 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
 
-	private List<Integer> getRunePouchRunes()
+	private static Layout readTabLayout(net.runelite.client.plugins.banktags.tabs.Layout tabLayout)
 	{
-		List<Integer> runes = new ArrayList<>(AMOUNT_VARBITS.length);
-		EnumComposition runepouchEnum = client.getEnum(EnumID.RUNEPOUCH_RUNE);
-		for (int i = 0; i < AMOUNT_VARBITS.length; i++)
+		LayoutCodecEvent event = new LayoutCodecEvent();
+		event.begin();
+		int[] itemIds = tabLayout.getLayout();
+		Layout layout = new Layout();
+		for (int i = 0; i < itemIds.length; i++)
 		{
-			int amount = client.getVarbitValue(AMOUNT_VARBITS[i]);
-			if (amount <= 0)
+			int itemId = itemIds[i];
+			if (itemId == -1)
 			{
 				continue;
 			}
-			int runeId = client.getVarbitValue(RUNE_VARBITS[i]);
-			int runeItemId = runepouchEnum.getIntValue(runeId);
-			runes.add(runeItemId);
+			layout.putItem(itemId, i);
+		}
+		if (event.shouldCommit())
+		{
+			event.tag = tabLayout.getTag();
+			event.operation = LayoutCodecEvent.READ_TAB;
+			event.inputSize = itemIds.length;
+			event.outputSize = layout.size();
+			event.commit();
+		}
+		return layout;
+	}
+
+	AutoLayoutMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	private void setMetricsEnabled(boolean enabled)
+	{
+		if (enabled && metrics == null)
+		{
+			metrics = new AutoLayoutMetrics();
+			layoutGenerator.setMetrics(metrics);
+			overlayManager.add(metricsOverlay);
+		}
+		else if (!enabled && metrics != null)
+		{
+			metrics = null;
+			layoutGenerator.setMetrics(null);
+			overlayManager.remove(metricsOverlay);
 		}
-		return runes;
 	}
 
 	private int getAutoLayoutDuplicateLimit()
@@ -159,10 +449,40 @@ public class ZigzagBankTagTabLayoutPlugin extends Plugin
 		return !config.autoLayoutDuplicatesEnabled() ? 0 : config.autoLayoutDuplicateLimit();
 	}
 
-	int getNonPlaceholderId(int id)
+	/** Like {@link ItemManager#canonicalize(int)}, but cached. Must be called on the client thread. */
+	@Override
+	public int canonicalize(int id)
 	{
+		if (id < 0)
+		{
+			return id;
+		}
+		int canonicalId = canonicalIds.get(id);
+		if (canonicalId != -1)
+		{
+			return canonicalId;
+		}
+		canonicalId = itemManager.canonicalize(id);
+		canonicalIds.put(id, canonicalId);
+		return canonicalId;
+	}
+
+	@Override
+	public int getNonPlaceholderId(int id)
+	{
+		int nonPlaceholderId = nonPlaceholderIds.get(id);
+		if (nonPlaceholderId != -1)
+		{
+			return nonPlaceholderId;
+		}
+		if (metrics != null)
+		{
+			metrics.countCompositionLookup();
+		}
 		ItemComposition itemComposition = itemManager.getItemComposition(id);
-		return (itemComposition.getPlaceholderTemplateId() == 14401) ? itemComposition.getPlaceholderId() : id;
+		nonPlaceholderId = (itemComposition.getPlaceholderTemplateId() == 14401) ? itemComposition.getPlaceholderId() : id;
+		nonPlaceholderIds.put(id, nonPlaceholderId);
+		return nonPlaceholderId;
 	}
 
 }
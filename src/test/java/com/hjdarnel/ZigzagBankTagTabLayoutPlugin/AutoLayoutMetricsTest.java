@@ -0,0 +1,122 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class AutoLayoutMetricsTest
+{
+	@Test
+	public void bucketsArePowersOfTwo()
+	{
+		assertBucket(0, 0);
+		assertBucket(1, 1);
+		assertBucket(2, 2);
+		assertBucket(3, 2);
+		assertBucket(4, 3);
+		assertBucket(7, 3);
+		assertBucket(8, 4);
+		assertBucket(1023, 10);
+		assertBucket(1024, 11);
+		assertBucket(1L << 62, 63);
+		assertBucket(Long.MAX_VALUE, 63);
+		// Clock adjustments can make a duration negative.
+		assertBucket(-5, 0);
+	}
+
+	@Test
+	public void everyPowerOfTwoStartsABucket()
+	{
+		for (int bucket = 1; bucket < Long.SIZE; bucket++)
+		{
+			long lowest = 1L << (bucket - 1);
+			assertBucket(lowest, bucket);
+			assertBucket(lowest - 1, bucket - 1);
+		}
+	}
+
+	@Test
+	public void percentilesAreTheUpperEndOfTheirBucket()
+	{
+		AutoLayoutMetrics.Histogram histogram = new AutoLayoutMetrics.Histogram();
+		for (int i = 0; i < 90; i++)
+		{
+			histogram.record(5);
+		}
+		for (int i = 0; i < 9; i++)
+		{
+			histogram.record(600);
+		}
+		histogram.record(1023);
+
+		assertEquals(7, histogram.getPercentile(0));
+		assertEquals(7, histogram.getPercentile(0.5));
+		assertEquals(7, histogram.getPercentile(0.9));
+		// 600 is in the bucket from 512 to 1023, so it reports as 1023.
+		assertEquals(1023, histogram.getPercentile(0.91));
+		assertEquals(1023, histogram.getPercentile(0.99));
+		assertEquals(1023, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void percentilesAreCappedAtTheMax()
+	{
+		AutoLayoutMetrics.Histogram histogram = new AutoLayoutMetrics.Histogram();
+		histogram.record(3);
+		histogram.record(1000);
+		assertEquals(3, histogram.getPercentile(0.5));
+		assertEquals(1000, histogram.getPercentile(0.99));
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(1));
+	}
+
+	@Test
+	public void emptyHistogram()
+	{
+		AutoLayoutMetrics.Histogram histogram = new AutoLayoutMetrics.Histogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+		assertEquals(0, histogram.getPercentile(0.99));
+		assertEquals("no samples", histogram.summarize());
+
+		histogram.record(0);
+		assertEquals(0, histogram.getPercentile(0.99));
+	}
+
+	@Test
+	public void summarizesEachPhaseAndTheCounters()
+	{
+		AutoLayoutMetrics metrics = new AutoLayoutMetrics();
+		metrics.record(AutoLayoutMetrics.Phase.GENERATION, 3000);
+		metrics.record(AutoLayoutMetrics.Phase.GENERATION, 5000);
+		metrics.addSlotsPlaced(40);
+		metrics.addItemsDisplaced(3);
+		metrics.countCompositionLookup();
+
+		String[] lines = metrics.summarize();
+		assertEquals(AutoLayoutMetrics.Phase.values().length + 1, lines.length);
+		assertEquals("Generation: 2 samples, mean 4000ns, p50 4095ns, p99 5000ns, max 5000ns", lines[AutoLayoutMetrics.Phase.GENERATION.ordinal()]);
+		assertEquals("Container read: no samples", lines[AutoLayoutMetrics.Phase.CONTAINER_READ.ordinal()]);
+		assertEquals("Slots placed: 40, items displaced: 3, composition lookups: 1", lines[lines.length - 1]);
+
+		metrics.reset();
+		assertEquals(0, metrics.getHistogram(AutoLayoutMetrics.Phase.GENERATION).getCount());
+		assertEquals(0, metrics.getSlotsPlaced());
+	}
+
+	@Test
+	public void formatsNanos()
+	{
+		assertEquals("9999ns", AutoLayoutMetrics.formatNanos(9_999));
+		assertEquals("10us", AutoLayoutMetrics.formatNanos(10_000));
+		assertEquals("9999us", AutoLayoutMetrics.formatNanos(9_999_999));
+		assertEquals("10ms", AutoLayoutMetrics.formatNanos(10_000_000));
+	}
+
+	private static void assertBucket(long nanos, int bucket)
+	{
+		AutoLayoutMetrics.Histogram histogram = new AutoLayoutMetrics.Histogram();
+		histogram.record(nanos);
+		assertEquals("duration " + nanos, 1, histogram.getBucketCount(bucket));
+		assertEquals(1, histogram.getCount());
+	}
+}
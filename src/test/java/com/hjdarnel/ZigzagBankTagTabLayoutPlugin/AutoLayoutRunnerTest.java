@@ -0,0 +1,256 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class AutoLayoutRunnerTest
+{
+	private static final String TAG = "tag";
+	private static final int[] TAB_ITEM_IDS = {1155, -1, 1277};
+
+	// Tasks run only when the test says so, to interleave the two threads in a known order.
+	private final Deque<Runnable> executorTasks = new ArrayDeque<>();
+	private final Deque<Runnable> clientTasks = new ArrayDeque<>();
+	private final FakeHost host = new FakeHost();
+	private final AutoLayoutRunner runner = new AutoLayoutRunner(executorTasks::add, clientTasks::add, host);
+
+	@Test
+	public void appliesTheGeneratedLayout()
+	{
+		AutoLayoutRequest request = request();
+		runner.submit(request);
+		assertTrue(runner.isPending());
+		runAll();
+
+		assertEquals(1, host.generated.size());
+		assertEquals(1, host.applied.size());
+		assertSame(request, host.applied.get(0));
+		assertEquals("1155:0,2434:1,1277:2", host.appliedLayouts.get(0).toString());
+		assertTrue(host.discarded.isEmpty());
+		assertFalse(runner.isPending());
+	}
+
+	@Test
+	public void staleBeforeGenerationIsNotGenerated()
+	{
+		AutoLayoutRequest request = request();
+		runner.submit(request);
+		host.inventoryVersion++;
+		runAll();
+
+		assertTrue(host.generated.isEmpty());
+		assertTrue(host.applied.isEmpty());
+		assertEquals(AutoLayoutRunner.Discard.STALE, host.discarded.get(request));
+		assertFalse(runner.isPending());
+	}
+
+	@Test
+	public void staleByContainerVersionAfterGeneration()
+	{
+		runner.submit(request());
+		runExecutor();
+		assertEquals(1, host.generated.size());
+
+		host.equipmentVersion++;
+		runClient();
+		assertTrue(host.applied.isEmpty());
+		assertEquals(1, host.discarded.size());
+		assertEquals(AutoLayoutRunner.Discard.STALE, host.discarded.values().iterator().next());
+		assertFalse(runner.isPending());
+	}
+
+	@Test
+	public void staleByTabContents()
+	{
+		runner.submit(request());
+		runExecutor();
+
+		// The player moved an item in the tab while the layout was being made.
+		host.tabs.put(TAG, new net.runelite.client.plugins.banktags.tabs.Layout(TAG, new int[]{1277, -1, 1155}));
+		runClient();
+		assertTrue(host.applied.isEmpty());
+		assertEquals(AutoLayoutRunner.Discard.STALE, host.discarded.values().iterator().next());
+	}
+
+	@Test
+	public void deletedTabIsNotReportedAsStale()
+	{
+		runner.submit(request());
+		runExecutor();
+
+		host.tabs.remove(TAG);
+		runClient();
+		assertTrue(host.applied.isEmpty());
+		assertEquals(AutoLayoutRunner.Discard.TAB_DELETED, host.discarded.values().iterator().next());
+		assertFalse(runner.isPending());
+	}
+
+	@Test
+	public void newerRequestSupersedesAQueuedOne()
+	{
+		AutoLayoutRequest first = request();
+		AutoLayoutRequest second = request();
+		runner.submit(first);
+		runner.submit(second);
+		runAll();
+
+		// The first is dropped without generating it or telling the player.
+		assertEquals(1, host.generated.size());
+		assertSame(second, host.generated.get(0));
+		assertEquals(1, host.applied.size());
+		assertSame(second, host.applied.get(0));
+		assertTrue(host.discarded.isEmpty());
+	}
+
+	@Test
+	public void newerRequestSupersedesAGeneratedOne()
+	{
+		AutoLayoutRequest first = request();
+		runner.submit(first);
+		runExecutor();
+
+		// The first is generated and waiting for the client thread when the second comes in.
+		AutoLayoutRequest second = request();
+		runner.submit(second);
+		runAll();
+
+		assertEquals(2, host.generated.size());
+		assertEquals(1, host.applied.size());
+		assertSame(second, host.applied.get(0));
+		assertTrue(host.discarded.isEmpty());
+	}
+
+	@Test
+	public void failedGenerationIsReported()
+	{
+		host.failures = 1;
+		AutoLayoutRequest failing = request();
+		runner.submit(failing);
+		runAll();
+
+		assertTrue(host.applied.isEmpty());
+		assertEquals(AutoLayoutRunner.Discard.FAILED, host.discarded.get(failing));
+		assertFalse(runner.isPending());
+
+		// The runner is ready for the next request.
+		runner.submit(request());
+		runAll();
+		assertEquals(1, host.applied.size());
+	}
+
+	@Test
+	public void cancelledRequestIsDroppedQuietly()
+	{
+		runner.submit(request());
+		runner.cancel();
+		assertFalse(runner.isPending());
+		runAll();
+		assertTrue(host.generated.isEmpty());
+
+		runner.submit(request());
+		runExecutor();
+		runner.cancel();
+		runClient();
+		assertTrue(host.applied.isEmpty());
+		assertTrue(host.discarded.isEmpty());
+	}
+
+	private AutoLayoutRequest request()
+	{
+		Layout currentLayout = Layout.fromString("1155:0,1277:2");
+		return new AutoLayoutRequest(TAG, TAB_ITEM_IDS.clone(), currentLayout, new int[0], new int[]{2434}, new int[0], 0, null,
+			host.equipmentVersion, host.inventoryVersion, 0);
+	}
+
+	private void runExecutor()
+	{
+		while (!executorTasks.isEmpty())
+		{
+			executorTasks.poll().run();
+		}
+	}
+
+	private void runClient()
+	{
+		while (!clientTasks.isEmpty())
+		{
+			clientTasks.poll().run();
+		}
+	}
+
+	private void runAll()
+	{
+		while (!executorTasks.isEmpty() || !clientTasks.isEmpty())
+		{
+			runExecutor();
+			runClient();
+		}
+	}
+
+	private static final class FakeHost implements AutoLayoutRunner.Host
+	{
+		final Map<String, net.runelite.client.plugins.banktags.tabs.Layout> tabs = new HashMap<>();
+		final List<AutoLayoutRequest> generated = new ArrayList<>();
+		final List<AutoLayoutRequest> applied = new ArrayList<>();
+		final List<Layout> appliedLayouts = new ArrayList<>();
+		// By identity, since requests compare by value.
+		final Map<AutoLayoutRequest, AutoLayoutRunner.Discard> discarded = new IdentityHashMap<>();
+		int equipmentVersion = 1;
+		int inventoryVersion = 1;
+		int failures = 0;
+
+		FakeHost()
+		{
+			tabs.put(TAG, new net.runelite.client.plugins.banktags.tabs.Layout(TAG, TAB_ITEM_IDS.clone()));
+		}
+
+		@Override
+		public Layout generate(AutoLayoutRequest request)
+		{
+			generated.add(request);
+			if (failures > 0)
+			{
+				failures--;
+				throw new IllegalStateException("generation failed");
+			}
+			Layout layout = request.getCurrentLayout().copy();
+			layout.putItem(request.getInventory()[0], 1);
+			return layout;
+		}
+
+		@Override
+		public boolean isStale(AutoLayoutRequest request)
+		{
+			return equipmentVersion != request.getEquipmentVersion() || inventoryVersion != request.getInventoryVersion();
+		}
+
+		@Override
+		public net.runelite.client.plugins.banktags.tabs.Layout loadTabLayout(String tag)
+		{
+			return tabs.get(tag);
+		}
+
+		@Override
+		public void apply(AutoLayoutRequest request, net.runelite.client.plugins.banktags.tabs.Layout savedLayout, Layout previewLayout)
+		{
+			applied.add(request);
+			appliedLayouts.add(previewLayout);
+		}
+
+		@Override
+		public void discard(AutoLayoutRequest request, AutoLayoutRunner.Discard reason)
+		{
+			discarded.put(request, reason);
+		}
+	}
+}
@@ -0,0 +1,105 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class CompactLayoutCodecTest
+{
+	@Test
+	public void roundTrip()
+	{
+		Random random = new Random(3);
+		for (int i = 0; i < 300; i++)
+		{
+			Layout layout = LayoutTest.randomLayout(random, random.nextInt(400), 1 + random.nextInt(5000));
+			byte[] bytes = CompactLayoutCodec.encode(layout);
+			assertTrue(layout.contentEquals(CompactLayoutCodec.decode(bytes, 0, bytes.length)));
+
+			String compact = layout.toCompactString();
+			assertTrue(CompactLayoutCodec.looksCompact(compact));
+			assertTrue(layout.contentEquals(Layout.fromString(compact)));
+		}
+	}
+
+	@Test
+	public void roundTripAtTheEdges()
+	{
+		Layout layout = Layout.emptyLayout();
+		assertTrue(layout.contentEquals(Layout.fromString(layout.toCompactString())));
+
+		layout.putItem(Integer.MAX_VALUE, 0);
+		layout.putItem(1, Layout.MAX_INDEX);
+		assertTrue(layout.contentEquals(Layout.fromString(layout.toCompactString())));
+	}
+
+	@Test
+	public void decodesAtAnOffset()
+	{
+		Layout layout = Layout.fromString("5:0,6:3,7:200");
+		byte[] bytes = CompactLayoutCodec.encode(layout);
+		byte[] padded = new byte[bytes.length + 7];
+		System.arraycopy(bytes, 0, padded, 4, bytes.length);
+		assertTrue(layout.contentEquals(CompactLayoutCodec.decode(padded, 4, bytes.length)));
+	}
+
+	@Test
+	public void corruptInputIsRejected()
+	{
+		byte[] bytes = CompactLayoutCodec.encode(Layout.fromString("5:0,6:3,7:200"));
+		// Every truncation.
+		for (int length = 0; length < bytes.length; length++)
+		{
+			assertRejected(Arrays.copyOf(bytes, length));
+		}
+
+		byte[] badVersion = bytes.clone();
+		badVersion[0] = (byte) (CompactLayoutCodec.VERSION + 1);
+		assertRejected(badVersion);
+
+		// Count larger than the input could hold.
+		assertRejected(new byte[]{CompactLayoutCodec.VERSION, 100, 0, 5});
+		// A varint that never ends.
+		assertRejected(new byte[]{CompactLayoutCodec.VERSION, 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 5});
+		// A gap that decodes to a negative number.
+		assertRejected(new byte[]{CompactLayoutCodec.VERSION, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 5});
+		// Item id 0.
+		assertRejected(new byte[]{CompactLayoutCodec.VERSION, 1, 0, 0});
+		// Index MAX_INDEX + 1, which is a gap of MAX_INDEX + 1 after the implicit -1.
+		int gap = Layout.MAX_INDEX + 1;
+		assertRejected(new byte[]{CompactLayoutCodec.VERSION, 1, (byte) (gap & 0x7F | 0x80), (byte) (gap >>> 7 & 0x7F | 0x80), (byte) (gap >>> 14), 5});
+	}
+
+	@Test
+	public void fromStringFallsBackToTheTextFormat()
+	{
+		// Starts like a compact layout, but isn't one.
+		String notCompact = "A" + Base64.getUrlEncoder().withoutPadding().encodeToString(new byte[]{9, 9, 9});
+		assertTrue(CompactLayoutCodec.looksCompact(notCompact));
+		assertEquals(0, Layout.fromString(notCompact, true).size());
+		try
+		{
+			Layout.fromString(notCompact);
+			fail();
+		}
+		catch (NumberFormatException expected)
+		{
+		}
+	}
+
+	private static void assertRejected(byte[] bytes)
+	{
+		try
+		{
+			CompactLayoutCodec.decode(bytes, 0, bytes.length);
+			fail(Arrays.toString(bytes));
+		}
+		catch (IllegalArgumentException expected)
+		{
+		}
+	}
+}
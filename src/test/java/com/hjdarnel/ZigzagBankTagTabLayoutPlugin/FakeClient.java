@@ -0,0 +1,189 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+import net.runelite.api.Client;
+import net.runelite.api.EnumComposition;
+import net.runelite.api.EnumID;
+import net.runelite.api.InventoryID;
+import net.runelite.api.Item;
+import net.runelite.api.ItemContainer;
+import net.runelite.api.ItemID;
+import net.runelite.api.Varbits;
+
+/**
+ * Synthetic inventory, equipment and varbit state behind a {@link Client}, for running the plugin's client-facing code
+ * without a game. Only the calls the plugin makes are answered; anything else throws UnsupportedOperationException.
+ */
+public class FakeClient
+{
+	/** The runes of the RUNEPOUCH_RUNE enum. Rune n in a rune pouch varbit is RUNES[n - 1]. */
+	public static final int[] RUNES = {
+		ItemID.AIR_RUNE, ItemID.WATER_RUNE, ItemID.EARTH_RUNE, ItemID.FIRE_RUNE, ItemID.MIND_RUNE, ItemID.CHAOS_RUNE,
+		ItemID.DEATH_RUNE, ItemID.BLOOD_RUNE, ItemID.COSMIC_RUNE, ItemID.NATURE_RUNE, ItemID.LAW_RUNE, ItemID.BODY_RUNE,
+		ItemID.SOUL_RUNE, ItemID.ASTRAL_RUNE, ItemID.WRATH_RUNE,
+	};
+
+	private static final int[] AMOUNT_VARBITS = {Varbits.RUNE_POUCH_AMOUNT1, Varbits.RUNE_POUCH_AMOUNT2, Varbits.RUNE_POUCH_AMOUNT3, Varbits.RUNE_POUCH_AMOUNT4};
+	private static final int[] RUNE_VARBITS = {Varbits.RUNE_POUCH_RUNE1, Varbits.RUNE_POUCH_RUNE2, Varbits.RUNE_POUCH_RUNE3, Varbits.RUNE_POUCH_RUNE4};
+
+	private final Map<Integer, int[]> containers = new HashMap<>();
+	private final Map<Integer, Integer> varbits = new HashMap<>();
+	private final Client client = fake(Client.class, "FakeClient", this::invokeClient);
+	private final EnumComposition runepouchEnum = fake(EnumComposition.class, "RUNEPOUCH_RUNE", (method, args) -> {
+		if (method.getName().equals("getIntValue"))
+		{
+			int key = (int) args[0];
+			return key > 0 && key <= RUNES.length ? RUNES[key - 1] : -1;
+		}
+		throw new UnsupportedOperationException(method.getName());
+	});
+	private int getVarbitValueCalls = 0;
+	private int getEnumCalls = 0;
+
+	public Client getClient()
+	{
+		return client;
+	}
+
+	/** Empty slots are -1. null removes the container. */
+	public void setItemContainer(InventoryID inventoryID, int... itemIds)
+	{
+		if (itemIds == null)
+		{
+			containers.remove(inventoryID.getId());
+		}
+		else
+		{
+			containers.put(inventoryID.getId(), itemIds.clone());
+		}
+	}
+
+	/** The container as the client would return it, or null if there is none. */
+	public ItemContainer getItemContainer(InventoryID inventoryID)
+	{
+		return getItemContainer(inventoryID.getId());
+	}
+
+	public void setVarbitValue(int varbitId, int value)
+	{
+		varbits.put(varbitId, value);
+	}
+
+	public int getVarbitValue(int varbitId)
+	{
+		return varbits.getOrDefault(varbitId, 0);
+	}
+
+	/** @param rune 1-based index into {@link #RUNES}, or 0 for an empty slot. */
+	public void setRunePouchSlot(int slot, int rune, int amount)
+	{
+		setVarbitValue(RUNE_VARBITS[slot], rune);
+		setVarbitValue(AMOUNT_VARBITS[slot], amount);
+	}
+
+	public int getVarbitValueCalls()
+	{
+		return getVarbitValueCalls;
+	}
+
+	public int getEnumCalls()
+	{
+		return getEnumCalls;
+	}
+
+	/** Item ids that a generated catalog keeps as plain items, so that they mean the same thing here. */
+	static int[] reservedItemIds()
+	{
+		int[] itemIds = new int[RUNES.length + 2];
+		System.arraycopy(RUNES, 0, itemIds, 0, RUNES.length);
+		itemIds[RUNES.length] = ItemID.RUNE_POUCH;
+		itemIds[RUNES.length + 1] = ItemID.DIVINE_RUNE_POUCH;
+		return itemIds;
+	}
+
+	static int maxReservedItemId()
+	{
+		int max = 0;
+		for (int itemId : reservedItemIds())
+		{
+			max = Math.max(max, itemId);
+		}
+		return max;
+	}
+
+	private Object invokeClient(Method method, Object[] args)
+	{
+		switch (method.getName())
+		{
+			case "getItemContainer":
+				return getItemContainer(args[0] instanceof InventoryID ? ((InventoryID) args[0]).getId() : (int) args[0]);
+			case "getVarbitValue":
+				getVarbitValueCalls++;
+				return getVarbitValue((int) args[0]);
+			case "getEnum":
+				getEnumCalls++;
+				if ((int) args[0] == EnumID.RUNEPOUCH_RUNE)
+				{
+					return runepouchEnum;
+				}
+				throw new UnsupportedOperationException("enum " + args[0]);
+			default:
+				throw new UnsupportedOperationException(method.getName());
+		}
+	}
+
+	private ItemContainer getItemContainer(int containerId)
+	{
+		int[] itemIds = containers.get(containerId);
+		if (itemIds == null)
+		{
+			return null;
+		}
+		Item[] items = new Item[itemIds.length];
+		for (int i = 0; i < itemIds.length; i++)
+		{
+			items[i] = new Item(itemIds[i], itemIds[i] == -1 ? 0 : 1);
+		}
+		return fake(ItemContainer.class, "ItemContainer " + containerId, (method, args) -> {
+			switch (method.getName())
+			{
+				case "getId":
+					return containerId;
+				case "getItems":
+					return items.clone();
+				case "getItem":
+					int slot = (int) args[0];
+					return slot >= 0 && slot < items.length && items[slot].getId() != -1 ? items[slot] : null;
+				case "size":
+					return items.length;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	/** A proxy that answers the interface's methods with handler, and Object's methods by identity. */
+	static <T> T fake(Class<T> type, String name, BiFunction<Method, Object[], Object> handler)
+	{
+		Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (self, method, args) -> {
+			if (method.getDeclaringClass() == Object.class)
+			{
+				switch (method.getName())
+				{
+					case "equals":
+						return self == args[0];
+					case "hashCode":
+						return System.identityHashCode(self);
+					default:
+						return name;
+				}
+			}
+			return handler.apply(method, args);
+		});
+		return type.cast(proxy);
+	}
+}
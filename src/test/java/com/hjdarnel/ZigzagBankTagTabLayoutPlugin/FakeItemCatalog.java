@@ -0,0 +1,315 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+import java.util.function.IntUnaryOperator;
+import net.runelite.api.ItemComposition;
+
+/**
+ * An in-memory stand-in for the game's item definitions, so that the layout generator can run without a client. A
+ * generated catalog has ids 1 to about itemCount, made up of plain items, items with placeholders, groups of variants
+ * (like the charges of a jewellery item) and items that have a different id when equipped. The rune pouches and the
+ * runes in {@link FakeClient#RUNES} are always plain items.
+ *
+ * Lookups are counted, and both canonicalize and getItemComposition can be replaced to test other behavior.
+ */
+public class FakeItemCatalog implements ItemResolver
+{
+	public static final int PLACEHOLDER_TEMPLATE_ID = 14401;
+
+	private static final int NONE = -1;
+
+	// Indexed by item id. NONE where there is no linked id.
+	private final int[] placeholderIds;
+	private final boolean[] isPlaceholder;
+	private final int[] canonicalIds;
+	private final int[] variationBaseIds;
+	// Indexed by base id. Variations of a base id are the ids following it.
+	private final int[] variationCounts;
+
+	private int[] realItemIds = new int[0];
+	private int[] equippedItemIds = new int[0];
+
+	private IntUnaryOperator canonicalizer = this::defaultCanonicalize;
+	// null for the catalog's own compositions.
+	private IntFunction<ItemComposition> compositions = null;
+	private int canonicalizeCalls = 0;
+	private int compositionLookups = 0;
+
+	private FakeItemCatalog(int length)
+	{
+		placeholderIds = new int[length];
+		isPlaceholder = new boolean[length];
+		canonicalIds = new int[length];
+		variationBaseIds = new int[length];
+		variationCounts = new int[length];
+		Arrays.fill(placeholderIds, NONE);
+		for (int id = 0; id < length; id++)
+		{
+			canonicalIds[id] = id;
+			variationBaseIds[id] = id;
+			variationCounts[id] = 1;
+		}
+	}
+
+	public static FakeItemCatalog generate(int itemCount, long seed)
+	{
+		Random random = new Random(seed);
+		boolean[] reserved = new boolean[FakeClient.maxReservedItemId() + 1];
+		for (int itemId : FakeClient.reservedItemIds())
+		{
+			reserved[itemId] = true;
+		}
+
+		// Decide the layout of the ids first, then fill in the tables.
+		List<int[]> entries = new ArrayList<>();
+		List<Integer> realItemIds = new ArrayList<>();
+		List<Integer> equippedItemIds = new ArrayList<>();
+		int id = 1;
+		while (id <= itemCount)
+		{
+			int roll = random.nextInt(100);
+			int kind;
+			int width;
+			if (roll < 55)
+			{
+				kind = 0;
+				width = 1;
+			}
+			else if (roll < 80)
+			{
+				kind = 1;
+				width = 2;
+			}
+			else if (roll < 90)
+			{
+				kind = 2;
+				width = 2 * (2 + random.nextInt(7));
+			}
+			else
+			{
+				kind = 3;
+				width = 2;
+			}
+			if (anyReserved(reserved, id, width))
+			{
+				kind = 0;
+				width = 1;
+			}
+			entries.add(new int[]{kind, id, width});
+			id += width;
+		}
+
+		FakeItemCatalog catalog = new FakeItemCatalog(Math.max(id, reserved.length));
+		for (int[] entry : entries)
+		{
+			int kind = entry[0];
+			int first = entry[1];
+			int width = entry[2];
+			switch (kind)
+			{
+				case 0:
+					realItemIds.add(first);
+					break;
+				case 1:
+					catalog.linkPlaceholder(first, first + 1);
+					realItemIds.add(first);
+					break;
+				case 2:
+					// Variants first, then a placeholder for each.
+					int variants = width / 2;
+					for (int i = 0; i < variants; i++)
+					{
+						catalog.variationBaseIds[first + i] = first;
+						catalog.variationBaseIds[first + variants + i] = first;
+						catalog.linkPlaceholder(first + i, first + variants + i);
+						realItemIds.add(first + i);
+					}
+					catalog.variationCounts[first] = width;
+					break;
+				case 3:
+					catalog.canonicalIds[first + 1] = first;
+					realItemIds.add(first);
+					equippedItemIds.add(first + 1);
+					break;
+			}
+		}
+		catalog.realItemIds = realItemIds.stream().mapToInt(Integer::intValue).toArray();
+		catalog.equippedItemIds = equippedItemIds.stream().mapToInt(Integer::intValue).toArray();
+		return catalog;
+	}
+
+	private static boolean anyReserved(boolean[] reserved, int from, int width)
+	{
+		for (int id = from; id < from + width; id++)
+		{
+			if (id < reserved.length && reserved[id])
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void linkPlaceholder(int itemId, int placeholderId)
+	{
+		placeholderIds[itemId] = placeholderId;
+		placeholderIds[placeholderId] = itemId;
+		isPlaceholder[placeholderId] = true;
+	}
+
+	/** The number of item ids in the catalog, including placeholders and equipped ids. */
+	public int size()
+	{
+		return placeholderIds.length - 1;
+	}
+
+	/** Ids of items that can be in an inventory: not placeholders, and not equipped-only ids. */
+	public int[] getRealItemIds()
+	{
+		return realItemIds.clone();
+	}
+
+	/** Ids that items only have while equipped, which canonicalize to another id. */
+	public int[] getEquippedItemIds()
+	{
+		return equippedItemIds.clone();
+	}
+
+	public int randomRealItemId(Random random)
+	{
+		return realItemIds[random.nextInt(realItemIds.length)];
+	}
+
+	/** Mostly real item ids, with some equipped-only ids mixed in. */
+	public int randomEquippableItemId(Random random)
+	{
+		return random.nextInt(4) == 0 && equippedItemIds.length > 0
+			? equippedItemIds[random.nextInt(equippedItemIds.length)]
+			: randomRealItemId(random);
+	}
+
+	/** The placeholder of an item, or -1 if it has none or is itself a placeholder. */
+	public int getPlaceholderId(int itemId)
+	{
+		return inCatalog(itemId) && !isPlaceholder[itemId] ? placeholderIds[itemId] : NONE;
+	}
+
+	/** Replaces canonicalize. The counter still counts calls. */
+	public void setCanonicalizer(IntUnaryOperator canonicalizer)
+	{
+		this.canonicalizer = canonicalizer;
+	}
+
+	/** Replaces getItemComposition, and makes getNonPlaceholderId go through it. The counter still counts lookups. */
+	public void setItemCompositions(IntFunction<ItemComposition> compositions)
+	{
+		this.compositions = compositions;
+	}
+
+	public int getCanonicalizeCalls()
+	{
+		return canonicalizeCalls;
+	}
+
+	public int getCompositionLookups()
+	{
+		return compositionLookups;
+	}
+
+	public void resetCounters()
+	{
+		canonicalizeCalls = 0;
+		compositionLookups = 0;
+	}
+
+	/** Like ItemManager.canonicalize, but without noted items. */
+	@Override
+	public int canonicalize(int itemId)
+	{
+		canonicalizeCalls++;
+		return canonicalizer.applyAsInt(itemId);
+	}
+
+	/** Like ItemManager.getItemComposition. Ids outside the catalog are plain items. */
+	public ItemComposition getItemComposition(int itemId)
+	{
+		compositionLookups++;
+		return compositions != null ? compositions.apply(itemId) : defaultItemComposition(itemId);
+	}
+
+	/**
+	 * Same rule as the plugin. With the catalog's own compositions this reads the tables directly, like the plugin
+	 * does once its cache is warm, so that benchmarks don't measure the fake.
+	 */
+	@Override
+	public int getNonPlaceholderId(int itemId)
+	{
+		if (compositions == null)
+		{
+			return inCatalog(itemId) && isPlaceholder[itemId] ? placeholderIds[itemId] : itemId;
+		}
+		ItemComposition itemComposition = getItemComposition(itemId);
+		return itemComposition.getPlaceholderTemplateId() == PLACEHOLDER_TEMPLATE_ID ? itemComposition.getPlaceholderId() : itemId;
+	}
+
+	@Override
+	public int getVariationBaseId(int itemId)
+	{
+		return inCatalog(itemId) ? variationBaseIds[itemId] : itemId;
+	}
+
+	@Override
+	public Collection<Integer> getVariations(int baseItemId)
+	{
+		if (!inCatalog(baseItemId) || variationBaseIds[baseItemId] != baseItemId)
+		{
+			return Collections.singletonList(baseItemId);
+		}
+		List<Integer> variations = new ArrayList<>(variationCounts[baseItemId]);
+		for (int i = 0; i < variationCounts[baseItemId]; i++)
+		{
+			variations.add(baseItemId + i);
+		}
+		return variations;
+	}
+
+	private int defaultCanonicalize(int itemId)
+	{
+		return inCatalog(itemId) ? canonicalIds[itemId] : itemId;
+	}
+
+	private ItemComposition defaultItemComposition(int itemId)
+	{
+		boolean placeholder = inCatalog(itemId) && isPlaceholder[itemId];
+		int placeholderId = inCatalog(itemId) ? placeholderIds[itemId] : NONE;
+		return FakeClient.fake(ItemComposition.class, "ItemComposition " + itemId, (method, args) -> {
+			switch (method.getName())
+			{
+				case "getId":
+					return itemId;
+				case "getName":
+					return (placeholder ? "Placeholder " : "Item ") + itemId;
+				case "getPlaceholderId":
+					return placeholderId;
+				case "getPlaceholderTemplateId":
+					return placeholder ? PLACEHOLDER_TEMPLATE_ID : NONE;
+				case "getNote":
+				case "getLinkedNoteId":
+					return NONE;
+				default:
+					throw new UnsupportedOperationException(method.getName());
+			}
+		});
+	}
+
+	private boolean inCatalog(int itemId)
+	{
+		return itemId > 0 && itemId < placeholderIds.length;
+	}
+}
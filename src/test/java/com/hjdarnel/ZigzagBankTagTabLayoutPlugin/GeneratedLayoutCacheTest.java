@@ -0,0 +1,152 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class GeneratedLayoutCacheTest
+{
+	private static final int[] EQUIPPED = {-1, 1155, -1, 1277};
+	private static final int[] INVENTORY = {12791, 555, 555, -1, 2434};
+	private static final int[] RUNE_POUCH = {556, 560};
+	private static final int[] NO_ITEMS = new int[0];
+
+	@Test
+	public void sameInputsHaveTheSameFingerprint()
+	{
+		// Equal content built in a different order.
+		Layout current = Layout.fromString("10:0,20:1,30:9");
+		Layout sameContent = Layout.emptyLayout();
+		sameContent.putItem(30, 9);
+		sameContent.putItem(20, 1);
+		sameContent.putItem(99, 0);
+		sameContent.putItem(10, 0);
+
+		assertEquals(fingerprint(RUNE_POUCH, current, 2), fingerprint(RUNE_POUCH.clone(), sameContent, 2));
+	}
+
+	@Test
+	public void duplicateLimitChangesTheFingerprint()
+	{
+		Layout current = Layout.fromString("10:0,20:1");
+		Set<Long> fingerprints = new HashSet<>();
+		for (int duplicateLimit = -1; duplicateLimit <= 28; duplicateLimit++)
+		{
+			assertTrue("limit " + duplicateLimit, fingerprints.add(fingerprint(RUNE_POUCH, current, duplicateLimit)));
+		}
+	}
+
+	@Test
+	public void runePouchChangesTheFingerprint()
+	{
+		Layout current = Layout.fromString("10:0,20:1");
+		Set<Long> fingerprints = new HashSet<>();
+		assertTrue(fingerprints.add(fingerprint(null, current, 0)));
+		assertTrue(fingerprints.add(fingerprint(NO_ITEMS, current, 0)));
+		assertTrue(fingerprints.add(fingerprint(new int[]{556}, current, 0)));
+		assertTrue(fingerprints.add(fingerprint(new int[]{556, 560}, current, 0)));
+		assertTrue(fingerprints.add(fingerprint(new int[]{560, 556}, current, 0)));
+		assertTrue(fingerprints.add(fingerprint(new int[]{556, 561}, current, 0)));
+	}
+
+	@Test
+	public void currentLayoutChangesTheFingerprint()
+	{
+		Set<Long> fingerprints = new HashSet<>();
+		for (String layout : new String[]{"", "10:0", "10:1", "20:0", "10:0,20:1", "20:0,10:1", "10:0,20:1,30:500"})
+		{
+			assertTrue(layout, fingerprints.add(fingerprint(RUNE_POUCH, Layout.fromString(layout), 0)));
+		}
+	}
+
+	@Test
+	public void itemsAreKeptInTheirOwnContainer()
+	{
+		Layout current = Layout.emptyLayout();
+		long fingerprint = GeneratedLayoutCache.fingerprint(new int[]{1, 2}, new int[]{3}, NO_ITEMS, NO_ITEMS, current, 0);
+		assertNotEquals(fingerprint, GeneratedLayoutCache.fingerprint(new int[]{1}, new int[]{2, 3}, NO_ITEMS, NO_ITEMS, current, 0));
+		assertNotEquals(fingerprint, GeneratedLayoutCache.fingerprint(new int[]{1, 2}, NO_ITEMS, new int[]{3}, NO_ITEMS, current, 0));
+		assertNotEquals(fingerprint, GeneratedLayoutCache.fingerprint(new int[]{1, 2}, NO_ITEMS, NO_ITEMS, new int[]{3}, current, 0));
+	}
+
+	@Test
+	public void layoutsAreCopiedOnPut()
+	{
+		GeneratedLayoutCache cache = new GeneratedLayoutCache(4);
+		Layout layout = Layout.fromString("10:0,20:1");
+		cache.put(1L, layout);
+		layout.putItem(30, 2);
+		layout.clearIndex(0);
+		assertEquals("10:0,20:1", cache.get(1L).toString());
+	}
+
+	@Test
+	public void layoutsAreCopiedOnGet()
+	{
+		GeneratedLayoutCache cache = new GeneratedLayoutCache(4);
+		cache.put(1L, Layout.fromString("10:0,20:1"));
+		cache.get(1L).putItem(30, 2);
+		cache.getIfPresent(1L).clearIndex(0);
+		assertEquals("10:0,20:1", cache.get(1L).toString());
+	}
+
+	@Test
+	public void evictsTheLeastRecentlyUsedLayout()
+	{
+		GeneratedLayoutCache cache = new GeneratedLayoutCache(2);
+		cache.put(1L, Layout.fromString("1:0"));
+		cache.put(2L, Layout.fromString("2:0"));
+		cache.get(1L);
+		cache.put(3L, Layout.fromString("3:0"));
+		assertEquals(2, cache.size());
+		assertNull(cache.getIfPresent(2L));
+		assertEquals("1:0", cache.getIfPresent(1L).toString());
+		assertEquals("3:0", cache.getIfPresent(3L).toString());
+	}
+
+	@Test
+	public void probesOnlyCountHits()
+	{
+		GeneratedLayoutCache cache = new GeneratedLayoutCache(2);
+		cache.put(1L, Layout.fromString("1:0"));
+		assertNull(cache.getIfPresent(2L));
+		cache.getIfPresent(1L);
+		cache.get(2L);
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+	}
+
+	@Test
+	public void rememberedLayoutsAreCountedOnce()
+	{
+		FakeItemCatalog catalog = FakeItemCatalog.generate(3000, 1);
+		LayoutGeneratorTest.Case c = LayoutGeneratorTest.randomCase(catalog, new Random(5));
+		LayoutGenerator generator = new LayoutGenerator(catalog);
+		GeneratedLayoutCache cache = generator.getGeneratedLayouts();
+
+		// The plugin probes first, and generates on a miss.
+		assertNull(generator.getRememberedLayout("tag", c.equipped, c.inventory, c.runePouch, NO_ITEMS, c.current, c.duplicateLimit));
+		Layout generated = generator.basicBankTagLayout("tag", c.equipped, c.inventory, c.runePouch, NO_ITEMS, c.current, c.duplicateLimit);
+		assertEquals(0, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		Layout remembered = generator.getRememberedLayout("tag", c.equipped, c.inventory, c.runePouch, NO_ITEMS, c.current, c.duplicateLimit);
+		assertTrue(generated.contentEquals(remembered));
+		assertEquals(1, cache.getHits());
+		assertEquals(1, cache.getMisses());
+
+		// Callers get their own copies.
+		remembered.putItem(1, 500);
+		assertTrue(generated.contentEquals(generator.basicBankTagLayout("tag", c.equipped, c.inventory, c.runePouch, NO_ITEMS, c.current, c.duplicateLimit)));
+	}
+
+	private static long fingerprint(int[] runePouch, Layout current, int duplicateLimit)
+	{
+		return GeneratedLayoutCache.fingerprint(EQUIPPED, INVENTORY, runePouch, NO_ITEMS, current, duplicateLimit);
+	}
+}
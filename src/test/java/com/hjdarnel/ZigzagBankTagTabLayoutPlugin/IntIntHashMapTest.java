@@ -0,0 +1,76 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class IntIntHashMapTest
+{
+	private static final int MISSING = -7;
+
+	@Test
+	public void randomOperationsMatchHashMap()
+	{
+		for (long seed = 0; seed < 10; seed++)
+		{
+			Random random = new Random(seed);
+			IntIntHashMap map = new IntIntHashMap(random.nextInt(20), MISSING);
+			Map<Integer, Integer> expected = new HashMap<>();
+			// Narrow key ranges so that collisions, removal chains and the 0 key are all exercised.
+			int keyRange = 8 + random.nextInt(2000);
+			for (int step = 0; step < 20000; step++)
+			{
+				int key = random.nextInt(keyRange) - keyRange / 4;
+				String message = "seed " + seed + " step " + step + " key " + key;
+				switch (random.nextInt(10))
+				{
+					case 0:
+					case 1:
+					case 2:
+					case 3:
+						int value = random.nextInt();
+						assertEquals(message, expected.getOrDefault(key, MISSING).intValue(), map.put(key, value));
+						expected.put(key, value);
+						break;
+					case 4:
+					case 5:
+					case 6:
+						assertEquals(message, expected.getOrDefault(key, MISSING).intValue(), map.remove(key));
+						expected.remove(key);
+						break;
+					case 7:
+						if (random.nextInt(500) == 0)
+						{
+							map.clear();
+							expected.clear();
+						}
+						break;
+					default:
+						assertEquals(message, expected.containsKey(key), map.containsKey(key));
+						assertEquals(message, expected.getOrDefault(key, MISSING).intValue(), map.get(key));
+						break;
+				}
+				assertEquals(message, expected.size(), map.size());
+				assertEquals(message, expected.isEmpty(), map.isEmpty());
+			}
+			for (int key = -keyRange / 4; key < keyRange; key++)
+			{
+				assertEquals(expected.getOrDefault(key, MISSING).intValue(), map.get(key));
+			}
+		}
+	}
+
+	@Test
+	public void storesTheMissingValueLikeAnyOther()
+	{
+		IntIntHashMap map = new IntIntHashMap(4, MISSING);
+		map.put(3, MISSING);
+		assertEquals(1, map.size());
+		assertTrue(map.containsKey(3));
+		assertEquals(MISSING, map.get(3));
+		assertEquals(MISSING, map.getMissingValue());
+	}
+}
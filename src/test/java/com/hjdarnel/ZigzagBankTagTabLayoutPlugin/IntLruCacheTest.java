@@ -0,0 +1,140 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class IntLruCacheTest
+{
+	private static final int MISSING = Integer.MIN_VALUE;
+
+	@Test
+	public void evictsTheLeastRecentlyUsedEntry()
+	{
+		IntLruCache cache = new IntLruCache(3, MISSING);
+		cache.put(1, 10);
+		cache.put(2, 20);
+		cache.put(3, 30);
+
+		// Reading 1 makes 2 the oldest.
+		assertEquals(10, cache.get(1));
+		cache.put(4, 40);
+		assertEquals(MISSING, cache.get(2));
+		assertEquals(10, cache.get(1));
+		assertEquals(30, cache.get(3));
+		assertEquals(40, cache.get(4));
+
+		// Now 1 is the oldest, then 3.
+		cache.put(5, 50);
+		cache.put(6, 60);
+		assertEquals(MISSING, cache.get(1));
+		assertEquals(MISSING, cache.get(3));
+		assertEquals(40, cache.get(4));
+		assertEquals(3, cache.size());
+	}
+
+	@Test
+	public void updatingAKeyReplacesItsValueAndRefreshesIt()
+	{
+		IntLruCache cache = new IntLruCache(2, MISSING);
+		cache.put(1, 10);
+		cache.put(2, 20);
+		cache.put(1, 11);
+		assertEquals(2, cache.size());
+
+		// 2 is now the oldest, even though 1 was put first.
+		cache.put(3, 30);
+		assertEquals(MISSING, cache.get(2));
+		assertEquals(11, cache.get(1));
+		assertEquals(30, cache.get(3));
+	}
+
+	@Test
+	public void neverGrowsPastItsCapacity()
+	{
+		IntLruCache single = new IntLruCache(1, MISSING);
+		for (int key = 0; key < 10; key++)
+		{
+			single.put(key, key);
+			assertEquals(1, single.size());
+			assertEquals(key, single.get(key));
+		}
+		assertEquals(MISSING, single.get(8));
+
+		IntLruCache cache = new IntLruCache(100, MISSING);
+		for (int key = 0; key < 1000; key++)
+		{
+			cache.put(key, key);
+			assertEquals(Math.min(key + 1, 100), cache.size());
+		}
+		assertEquals(100, cache.capacity());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rejectsAnEmptyCapacity()
+	{
+		new IntLruCache(0, MISSING);
+	}
+
+	@Test
+	public void countsHitsAndMisses()
+	{
+		IntLruCache cache = new IntLruCache(4, MISSING);
+		assertEquals(0, cache.getHitRate(), 0);
+		cache.put(1, 10);
+		cache.get(1);
+		cache.get(1);
+		cache.get(1);
+		cache.get(2);
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.75, cache.getHitRate(), 0);
+
+		cache.clear();
+		assertEquals(0, cache.size());
+		assertEquals(0, cache.getHits());
+		assertEquals(MISSING, cache.get(1));
+	}
+
+	@Test
+	public void matchesAnAccessOrderedLinkedHashMap()
+	{
+		Random random = new Random(1);
+		for (int seed = 0; seed < 20; seed++)
+		{
+			int capacity = 1 + random.nextInt(64);
+			IntLruCache cache = new IntLruCache(capacity, MISSING);
+			Map<Integer, Integer> expected = new LinkedHashMap<Integer, Integer>(16, 0.75f, true)
+			{
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<Integer, Integer> eldest)
+				{
+					return size() > capacity;
+				}
+			};
+			int keyRange = capacity + random.nextInt(3 * capacity);
+			for (int step = 0; step < 5000; step++)
+			{
+				int key = random.nextInt(keyRange);
+				if (random.nextBoolean())
+				{
+					int value = random.nextInt(1000);
+					cache.put(key, value);
+					expected.put(key, value);
+				}
+				else
+				{
+					assertEquals("seed " + seed + " step " + step, expected.getOrDefault(key, MISSING).intValue(), cache.get(key));
+				}
+				assertEquals(expected.size(), cache.size());
+			}
+			if (random.nextInt(4) == 0)
+			{
+				cache.clear();
+				expected.clear();
+			}
+		}
+	}
+}
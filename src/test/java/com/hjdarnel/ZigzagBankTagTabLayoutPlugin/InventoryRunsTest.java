@@ -0,0 +1,69 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import static org.junit.Assert.assertEquals;
+import org.junit.Test;
+
+public class InventoryRunsTest
+{
+	@Test
+	public void consecutiveDuplicatesShareARun()
+	{
+		InventoryRuns runs = new InventoryRuns().encode(new int[]{5, 5, 5, 7, 5, 5, 9});
+		assertRuns(runs, 5, 3, 7, 1, 5, 2, 9, 1);
+	}
+
+	@Test
+	public void emptySlotsAreSkipped()
+	{
+		InventoryRuns runs = new InventoryRuns().encode(new int[]{-1, 5, -1, -1, 5, 7, -1, 7, -1});
+		assertRuns(runs, 5, 2, 7, 2);
+
+		assertRuns(runs.encode(new int[]{-1, -1, -1}));
+		assertRuns(runs.encode(new int[0]));
+	}
+
+	@Test
+	public void singleElementInventories()
+	{
+		InventoryRuns runs = new InventoryRuns();
+		assertRuns(runs.encode(new int[]{42}), 42, 1);
+		assertRuns(runs.encode(new int[]{-1}));
+		assertRuns(runs.encode(new int[]{0}), 0, 1);
+	}
+
+	@Test
+	public void reusedInstancesOnlyHoldTheLatestContainer()
+	{
+		InventoryRuns runs = new InventoryRuns();
+		runs.encode(new int[]{1, 2, 3, 4, 5});
+		assertRuns(runs.encode(new int[]{6, 6}), 6, 2);
+	}
+
+	@Test
+	public void growsPastAFullInventory()
+	{
+		int[] container = new int[100];
+		for (int i = 0; i < container.length; i++)
+		{
+			container[i] = i % 2 == 0 ? 1 : 2;
+		}
+		InventoryRuns runs = new InventoryRuns().encode(container);
+		assertEquals(100, runs.getRunCount());
+		for (int run = 0; run < runs.getRunCount(); run++)
+		{
+			assertEquals(container[run], runs.getItemId(run));
+			assertEquals(1, runs.getLength(run));
+		}
+	}
+
+	/** Checks the runs against pairs of item id and length. */
+	private static void assertRuns(InventoryRuns runs, int... expected)
+	{
+		assertEquals(expected.length / 2, runs.getRunCount());
+		for (int run = 0; run < runs.getRunCount(); run++)
+		{
+			assertEquals("run " + run, expected[2 * run], runs.getItemId(run));
+			assertEquals("run " + run, expected[2 * run + 1], runs.getLength(run));
+		}
+	}
+}
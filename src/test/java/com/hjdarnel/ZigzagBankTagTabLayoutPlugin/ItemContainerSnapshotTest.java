@@ -0,0 +1,89 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import net.runelite.api.InventoryID;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ItemContainerSnapshotTest
+{
+	private final FakeClient client = new FakeClient();
+	private final ItemContainerSnapshot snapshot = new ItemContainerSnapshot();
+
+	@Test
+	public void versionIncreasesWhenTheItemsChange()
+	{
+		assertFalse(snapshot.isInitialized());
+		update(1155, -1, 1277);
+		assertTrue(snapshot.isInitialized());
+		assertEquals(1, snapshot.getVersion());
+		assertArrayEquals(new int[]{1155, -1, 1277}, snapshot.getItemIds());
+
+		update(1155, 2434, 1277);
+		assertEquals(2, snapshot.getVersion());
+		assertArrayEquals(new int[]{1155, 2434, 1277}, snapshot.getItemIds());
+
+		update(1155, 2434);
+		assertEquals(3, snapshot.getVersion());
+	}
+
+	@Test
+	public void unchangedItemsKeepTheVersion()
+	{
+		update(1155, -1, 1277);
+		int[] itemIds = snapshot.getItemIds();
+		update(1155, -1, 1277);
+		update(1155, -1, 1277);
+		assertEquals(1, snapshot.getVersion());
+		assertSame(itemIds, snapshot.getItemIds());
+	}
+
+	@Test
+	public void missingContainerIsEmpty()
+	{
+		snapshot.update(client.getItemContainer(InventoryID.INVENTORY));
+		assertTrue(snapshot.isInitialized());
+		assertEquals(0, snapshot.getVersion());
+		assertEquals(0, snapshot.getItemIds().length);
+
+		update(1155);
+		update((int[]) null);
+		assertEquals(2, snapshot.getVersion());
+		assertEquals(0, snapshot.getItemIds().length);
+	}
+
+	@Test
+	public void returnedArraysNeverChange()
+	{
+		update(1155, -1, 1277);
+		int[] itemIds = snapshot.getItemIds();
+		update(2434, 2434, 2434);
+		assertArrayEquals(new int[]{1155, -1, 1277}, itemIds);
+	}
+
+	@Test
+	public void invalidateOnlyForgetsThatTheSnapshotIsCurrent()
+	{
+		update(1155, -1, 1277);
+		snapshot.invalidate();
+		assertFalse(snapshot.isInitialized());
+
+		// Re-reading the same items doesn't make a pending request look stale.
+		update(1155, -1, 1277);
+		assertTrue(snapshot.isInitialized());
+		assertEquals(1, snapshot.getVersion());
+
+		snapshot.invalidate();
+		update(1155);
+		assertEquals(2, snapshot.getVersion());
+	}
+
+	private void update(int... itemIds)
+	{
+		client.setItemContainer(InventoryID.INVENTORY, itemIds);
+		snapshot.update(client.getItemContainer(InventoryID.INVENTORY));
+	}
+}
@@ -0,0 +1,128 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Arrays;
+import java.util.Collection;
+import net.runelite.api.ItemID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class ItemVariationTableTest
+{
+	private final FakeItemCatalog catalog = FakeItemCatalog.generate(3000, 1);
+
+	@Test
+	public void baseIdsMatchTheResolver()
+	{
+		ItemVariationTable table = new ItemVariationTable(catalog);
+		// Past the end of the catalog too, and in descending order so that the table grows more than once.
+		for (int itemId = catalog.size() + 5000; itemId >= -2; itemId--)
+		{
+			assertEquals("item " + itemId, catalog.getVariationBaseId(itemId), table.getBaseId(itemId));
+		}
+		for (int itemId = -2; itemId <= catalog.size() + 5000; itemId++)
+		{
+			assertEquals("item " + itemId, catalog.getVariationBaseId(itemId), table.getBaseId(itemId));
+		}
+	}
+
+	@Test
+	public void looksUpEachBaseIdOnce()
+	{
+		CountingResolver resolver = new CountingResolver();
+		ItemVariationTable table = new ItemVariationTable(resolver);
+		assertEquals(0, resolver.baseIdLookups);
+
+		int[] itemIds = catalog.getRealItemIds();
+		for (int itemId : itemIds)
+		{
+			table.getBaseId(itemId);
+		}
+		assertEquals(itemIds.length, resolver.baseIdLookups);
+		for (int itemId : itemIds)
+		{
+			assertEquals(catalog.getVariationBaseId(itemId), table.getBaseId(itemId));
+		}
+		assertEquals(itemIds.length, resolver.baseIdLookups);
+		assertEquals(0, resolver.variationLookups);
+	}
+
+	@Test
+	public void runePouchBitsetHasEveryVariant()
+	{
+		CountingResolver resolver = new CountingResolver();
+		ItemVariationTable table = new ItemVariationTable(resolver);
+		table.getBaseId(ItemID.RUNE_POUCH);
+		assertEquals(0, resolver.variationLookups);
+
+		assertTrue(table.isRunePouch(ItemID.RUNE_POUCH));
+		assertEquals(2, resolver.variationLookups);
+		assertTrue(table.isRunePouch(CountingResolver.RUNE_POUCH_VARIANT));
+		assertTrue(table.isRunePouch(ItemID.DIVINE_RUNE_POUCH));
+		assertTrue(table.isRunePouch(CountingResolver.DIVINE_RUNE_POUCH_VARIANT));
+
+		assertFalse(table.isRunePouch(ItemID.RUNE_POUCH + 1));
+		assertFalse(table.isRunePouch(CountingResolver.DIVINE_RUNE_POUCH_VARIANT + 1));
+		assertFalse(table.isRunePouch(FakeClient.RUNES[0]));
+		assertFalse(table.isRunePouch(0));
+		assertFalse(table.isRunePouch(-1));
+		assertFalse(table.isRunePouch(Integer.MAX_VALUE));
+		assertEquals(2, resolver.variationLookups);
+	}
+
+	@Test
+	public void plainRunePouchesFromTheCatalog()
+	{
+		ItemVariationTable table = new ItemVariationTable(catalog);
+		for (int itemId : catalog.getRealItemIds())
+		{
+			boolean runePouch = itemId == ItemID.RUNE_POUCH || itemId == ItemID.DIVINE_RUNE_POUCH;
+			assertEquals("item " + itemId, runePouch, table.isRunePouch(itemId));
+		}
+	}
+
+	/** The fake catalog, with counted lookups and a couple of extra rune pouch variants. */
+	private final class CountingResolver implements ItemResolver
+	{
+		static final int RUNE_POUCH_VARIANT = 24416;
+		static final int DIVINE_RUNE_POUCH_VARIANT = 27509;
+
+		int baseIdLookups = 0;
+		int variationLookups = 0;
+
+		@Override
+		public int canonicalize(int itemId)
+		{
+			return catalog.canonicalize(itemId);
+		}
+
+		@Override
+		public int getNonPlaceholderId(int itemId)
+		{
+			return catalog.getNonPlaceholderId(itemId);
+		}
+
+		@Override
+		public int getVariationBaseId(int itemId)
+		{
+			baseIdLookups++;
+			return catalog.getVariationBaseId(itemId);
+		}
+
+		@Override
+		public Collection<Integer> getVariations(int baseItemId)
+		{
+			variationLookups++;
+			switch (baseItemId)
+			{
+				case ItemID.RUNE_POUCH:
+					return Arrays.asList(ItemID.RUNE_POUCH, RUNE_POUCH_VARIANT, -1);
+				case ItemID.DIVINE_RUNE_POUCH:
+					return Arrays.asList(ItemID.DIVINE_RUNE_POUCH, DIVINE_RUNE_POUCH_VARIANT);
+				default:
+					return catalog.getVariations(baseItemId);
+			}
+		}
+	}
+}
@@ -0,0 +1,97 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LayoutDiffTest
+{
+	@Test
+	public void recordsClearedSlotsAndMovedItems()
+	{
+		// 10 moves from 0 to 5, 20 moves from 1 to 0, slot 1 ends up empty and 30 stays put.
+		Layout from = Layout.fromString("10:0,20:1,30:2");
+		Layout to = Layout.fromString("20:0,30:2,10:5");
+
+		LayoutDiff diff = LayoutDiff.between(from, to);
+		assertEquals(3, diff.size());
+		assertChange(diff, 0, 0, 10, 20);
+		assertChange(diff, 1, 1, 20, -1);
+		assertChange(diff, 2, 5, -1, 10);
+
+		Layout layout = from.copy();
+		diff.applyTo(layout);
+		assertEquals(to.toString(), layout.toString());
+	}
+
+	@Test
+	public void equalLayoutsHaveNoChanges()
+	{
+		Layout layout = Layout.fromString("10:0,20:1,30:200");
+		assertTrue(LayoutDiff.between(layout, layout.copy()).isEmpty());
+		assertTrue(LayoutDiff.between(Layout.emptyLayout(), Layout.emptyLayout()).isEmpty());
+	}
+
+	@Test
+	public void applyingTheDiffGivesTheTargetLayout()
+	{
+		Random random = new Random(1);
+		for (int i = 0; i < 2000; i++)
+		{
+			// Small id and index ranges, so that ids often move between slots and slots are often cleared.
+			Layout from = LayoutTest.randomLayout(random, random.nextInt(60), 1 + random.nextInt(200));
+			Layout to = random.nextBoolean() ? mutate(random, from) : LayoutTest.randomLayout(random, random.nextInt(60), 1 + random.nextInt(200));
+			String fromBefore = from.toString();
+
+			LayoutDiff diff = LayoutDiff.between(from, to);
+			Layout layout = from.copy();
+			diff.applyTo(layout);
+			assertEquals("case " + i, to.toString(), layout.toString());
+			assertEquals("case " + i, fromBefore, from.toString());
+
+			for (int change = 0; change < diff.size(); change++)
+			{
+				int index = diff.getIndex(change);
+				assertTrue("case " + i, change == 0 || diff.getIndex(change - 1) < index);
+				assertEquals("case " + i, from.getItemAtIndex(index), diff.getOldItemId(change));
+				assertEquals("case " + i, to.getItemAtIndex(index), diff.getNewItemId(change));
+			}
+		}
+	}
+
+	/** A copy with a few items moved, cleared or swapped in, like a player rearranging a tab. */
+	private static Layout mutate(Random random, Layout layout)
+	{
+		Layout mutated = layout.copy();
+		int changes = random.nextInt(8);
+		for (int i = 0; i < changes && !mutated.isEmpty(); i++)
+		{
+			int index = mutated.getLowestUsedIndex() + random.nextInt(mutated.getHighestUsedIndex() - mutated.getLowestUsedIndex() + 1);
+			int itemId = mutated.getItemAtIndex(index);
+			switch (random.nextInt(3))
+			{
+				case 0:
+					mutated.clearIndex(index);
+					break;
+				case 1:
+					if (itemId != -1)
+					{
+						mutated.moveItem(index, random.nextInt(250), itemId);
+					}
+					break;
+				default:
+					mutated.putItem(1 + random.nextInt(500), index);
+					break;
+			}
+		}
+		return mutated;
+	}
+
+	private static void assertChange(LayoutDiff diff, int change, int index, int oldItemId, int newItemId)
+	{
+		assertEquals(index, diff.getIndex(change));
+		assertEquals(oldItemId, diff.getOldItemId(change));
+		assertEquals(newItemId, diff.getNewItemId(change));
+	}
+}
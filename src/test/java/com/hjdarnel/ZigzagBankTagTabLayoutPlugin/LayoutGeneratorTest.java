@@ -0,0 +1,318 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+import net.runelite.api.ItemID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LayoutGeneratorTest
+{
+	private final FakeItemCatalog catalog = FakeItemCatalog.generate(3000, 1);
+
+	@Test
+	public void matchesListBasedGeneratorOnAKnownCase()
+	{
+		int[] equipped = {-1, -1, 2911, 2858, 194, 249, 1949, 1515, 217, 1711, 175, 1979, 2320, 2611};
+		int[] inventory = {-1, 1306, 746, 2209, 2330, 1445, 1241, 1392, 750, 655, 1999, 12791, 871, -1, -1, 160, 2457, 2363, -1, 1462, 1756, 2502, 712, 36, 2127, 224, 557, 157};
+		Layout current = Layout.fromString("1420:4,2850:14,1421:15,1874:25,1115:33,22:81,2616:82");
+
+		Layout layout = new LayoutGenerator(catalog).generateLayout(equipped, inventory, new int[0], new int[0], current, 0);
+		assertEquals("2911:0,194:1,1948:2,217:3,175:4,2320:5,2858:8,249:9,1515:10,1710:11,1978:12,2611:13,2850:14,1421:15,"
+			+ "1306:16,2209:17,1445:18,1392:19,655:20,12791:21,160:22,2363:23,746:24,2330:25,1241:26,750:27,1999:28,871:29,"
+			+ "2457:30,1462:31,1756:32,712:33,2127:34,557:35,2502:40,36:41,224:42,157:43,1874:48,1115:49,22:81,2616:82",
+			layout.toString());
+	}
+
+	@Test
+	public void matchesListBasedGenerator()
+	{
+		Random random = new Random(2);
+		LayoutGenerator generator = new LayoutGenerator(catalog);
+		ListBasedGenerator listBased = new ListBasedGenerator(catalog);
+		for (int i = 0; i < 500; i++)
+		{
+			Case c = randomCase(catalog, random);
+			Layout expected = listBased.generateLayout(toList(c.equipped), toList(c.inventory), toList(c.runePouch), new ArrayList<>(), c.current, c.duplicateLimit);
+			Layout layout = generator.generateLayout(c.equipped, c.inventory, c.runePouch, new int[0], c.current, c.duplicateLimit);
+			assertEquals("case " + i, expected.toString(), layout.toString());
+		}
+	}
+
+	@Test
+	public void listAndArrayOverloadsAgree()
+	{
+		Random random = new Random(3);
+		LayoutGenerator generator = new LayoutGenerator(catalog);
+		for (int i = 0; i < 200; i++)
+		{
+			Case c = randomCase(catalog, random);
+			Layout fromArrays = generator.generateLayout(c.equipped, c.inventory, c.runePouch, new int[0], c.current, c.duplicateLimit);
+			Layout fromLists = generator.generateLayout(toList(c.equipped), toList(c.inventory), toList(c.runePouch), new ArrayList<>(), c.current, c.duplicateLimit);
+			assertTrue("case " + i, fromArrays.contentEquals(fromLists));
+		}
+	}
+
+	@Test
+	public void generationLeavesTheCurrentLayoutAlone()
+	{
+		Random random = new Random(4);
+		LayoutGenerator generator = new LayoutGenerator(catalog);
+		for (int i = 0; i < 100; i++)
+		{
+			Case c = randomCase(catalog, random);
+			String before = c.current.toString();
+			generator.generateLayout(c.equipped, c.inventory, c.runePouch, new int[0], c.current, c.duplicateLimit);
+			assertEquals(before, c.current.toString());
+		}
+	}
+
+	@Test
+	public void resolvedItemsGiveTheSameLayoutWithoutTheResolver()
+	{
+		Random random = new Random(6);
+		LayoutGenerator direct = new LayoutGenerator(catalog);
+		LayoutGenerator resolved = new LayoutGenerator(catalog);
+		for (int i = 0; i < 200; i++)
+		{
+			Case c = randomCase(catalog, random);
+			Layout expected = direct.generateLayout(c.equipped, c.inventory, c.runePouch, new int[0], c.current, c.duplicateLimit);
+
+			resolved.setItemResolver(ResolvedItems.resolve(catalog, c.equipped, c.inventory, c.runePouch, c.current));
+			catalog.resetCounters();
+			Layout layout = resolved.generateLayout(c.equipped, c.inventory, c.runePouch, new int[0], c.current, c.duplicateLimit);
+			assertEquals("case " + i, 0, catalog.getCanonicalizeCalls());
+			assertTrue("case " + i, expected.contentEquals(layout));
+		}
+	}
+
+	/** Inputs like the plugin's: a full equipment and inventory with some gaps, and sometimes a rune pouch. */
+	static Case randomCase(FakeItemCatalog catalog, Random random)
+	{
+		Case c = new Case();
+		c.equipped = new int[14];
+		for (int i = 0; i < c.equipped.length; i++)
+		{
+			c.equipped[i] = random.nextInt(5) == 0 ? -1 : catalog.randomEquippableItemId(random);
+		}
+		c.inventory = new int[28];
+		for (int i = 0; i < c.inventory.length; i++)
+		{
+			c.inventory[i] = random.nextInt(8) == 0 ? -1 : catalog.randomRealItemId(random);
+		}
+		if (random.nextBoolean())
+		{
+			c.inventory[random.nextInt(c.inventory.length)] = random.nextBoolean() ? ItemID.RUNE_POUCH : ItemID.DIVINE_RUNE_POUCH;
+		}
+		c.runePouch = new int[random.nextInt(5)];
+		for (int i = 0; i < c.runePouch.length; i++)
+		{
+			c.runePouch[i] = FakeClient.RUNES[random.nextInt(FakeClient.RUNES.length)];
+		}
+		c.current = Layout.emptyLayout();
+		int size = random.nextInt(80);
+		for (int i = 0; i < size; i++)
+		{
+			c.current.putItem(catalog.randomRealItemId(random), random.nextInt(120));
+		}
+		c.duplicateLimit = random.nextInt(6) - 1;
+		return c;
+	}
+
+	private static List<Integer> toList(int[] itemIds)
+	{
+		List<Integer> list = new ArrayList<>(itemIds.length);
+		for (int itemId : itemIds)
+		{
+			list.add(itemId);
+		}
+		return list;
+	}
+
+	static final class Case
+	{
+		int[] equipped;
+		int[] inventory;
+		int[] runePouch;
+		Layout current;
+		int duplicateLimit;
+	}
+
+	/**
+	 * The generator as it was before it moved to int arrays: lists, streams, and a HashMap from index to item id for
+	 * the layout being built. Only the data structures were swapped out, so any difference in output is a bug.
+	 */
+	private static final class ListBasedGenerator
+	{
+		private final ItemResolver plugin;
+
+		ListBasedGenerator(ItemResolver plugin)
+		{
+			this.plugin = plugin;
+		}
+
+		Layout generateLayout(List<Integer> equippedItems, List<Integer> inventory, List<Integer> runePouch, List<Integer> additionalItems, Layout currentLayout, int duplicateLimit)
+		{
+			if (!hasRunePouch(inventory))
+			{
+				runePouch = null;
+			}
+			equippedItems = equippedItems.stream()
+				.map(plugin::canonicalize)
+				.collect(Collectors.toList());
+
+			Map<Integer, Integer> current = new HashMap<>();
+			for (Map.Entry<Integer, Integer> pair : currentLayout.allPairs())
+			{
+				current.put(pair.getKey(), pair.getValue());
+			}
+			Map<Integer, Integer> preview = zigzagLayout(equippedItems, inventory, runePouch, additionalItems, current, duplicateLimit);
+
+			Layout layout = Layout.emptyLayout();
+			for (Map.Entry<Integer, Integer> pair : preview.entrySet())
+			{
+				layout.putItem(pair.getValue(), pair.getKey());
+			}
+			return layout;
+		}
+
+		private boolean hasRunePouch(List<Integer> inventory)
+		{
+			Collection<Integer> runePouchVariations = plugin.getVariations(ItemID.RUNE_POUCH);
+			Collection<Integer> divineRunePouchVariations = plugin.getVariations(ItemID.DIVINE_RUNE_POUCH);
+			return inventory.stream().anyMatch(itemId -> runePouchVariations.contains(itemId) || divineRunePouchVariations.contains(itemId));
+		}
+
+		private Map<Integer, Integer> zigzagLayout(List<Integer> equippedItems, List<Integer> inventory, List<Integer> runePouch, List<Integer> additionalItems, Map<Integer, Integer> currentLayout, int duplicateLimit)
+		{
+			Map<Integer, Integer> previewLayout = new HashMap<>();
+			List<Integer> displacedItems = new ArrayList<>();
+
+			int i = 0;
+			i = layoutItems(equippedItems, currentLayout, previewLayout, displacedItems, i, true);
+
+			inventory = inventory.stream().filter(itemId -> itemId != -1).collect(Collectors.toList());
+			if (duplicateLimit <= 0)
+			{
+				inventory = inventory.stream().distinct().collect(Collectors.toList());
+			}
+			else
+			{
+				inventory = limitDuplicates(inventory, duplicateLimit);
+			}
+			i = layoutItems(inventory, currentLayout, previewLayout, displacedItems, i, true);
+
+			if (runePouch != null)
+			{
+				i = layoutItems(runePouch, currentLayout, previewLayout, displacedItems, i, false);
+			}
+			i = layoutItems(additionalItems, currentLayout, previewLayout, displacedItems, i, false);
+
+			int displacedItemsStart = i;
+
+			for (Map.Entry<Integer, Integer> itemPosition : currentLayout.entrySet())
+			{
+				previewLayout.putIfAbsent(itemPosition.getKey(), itemPosition.getValue());
+			}
+
+			displacedItems = displacedItems.stream().filter(id -> !layoutContainsItem(id, previewLayout)).collect(Collectors.toList());
+
+			int j = displacedItemsStart;
+			while (displacedItems.size() > 0 && j < 2000 / 38 * 8)
+			{
+				if (!currentLayout.containsKey(j))
+				{
+					previewLayout.put(j, displacedItems.remove(0));
+				}
+				j++;
+			}
+			return previewLayout;
+		}
+
+		private static List<Integer> limitDuplicates(List<Integer> inventory, int duplicateLimit)
+		{
+			List<Map.Entry<Integer, Integer>> groupedInventory = new ArrayList<>();
+			int inARow = 0;
+			int lastItemId = -1;
+			for (Integer itemId : inventory)
+			{
+				if (lastItemId != itemId)
+				{
+					int quantity = inARow > duplicateLimit ? 1 : inARow;
+					groupedInventory.add(new AbstractMap.SimpleEntry<>(lastItemId, quantity));
+					inARow = 0;
+				}
+				inARow++;
+				lastItemId = itemId;
+			}
+			int quantity = inARow > duplicateLimit ? 1 : inARow;
+			if (quantity > 0)
+			{
+				groupedInventory.add(new AbstractMap.SimpleEntry<>(lastItemId, quantity));
+			}
+			return groupedInventory.stream().flatMap(entry -> Collections.nCopies(entry.getValue(), entry.getKey()).stream()).collect(Collectors.toList());
+		}
+
+		private static int layoutItems(List<Integer> items, Map<Integer, Integer> currentLayout, Map<Integer, Integer> previewLayout, List<Integer> displacedItems, int i, boolean useZigZag)
+		{
+			for (Integer itemId : items)
+			{
+				if (itemId == -1)
+				{
+					continue;
+				}
+				int index = useZigZag ? toZigZagIndex(i) : i;
+				if (itemId <= 0)
+				{
+					previewLayout.remove(index);
+				}
+				else
+				{
+					previewLayout.put(index, itemId);
+				}
+				Integer currentLayoutItem = currentLayout.get(index);
+				if (currentLayoutItem != null)
+				{
+					displacedItems.add(currentLayoutItem);
+				}
+				i++;
+			}
+			if (!items.isEmpty() && !previewLayout.isEmpty())
+			{
+				int highestUsedIndex = Collections.max(previewLayout.keySet());
+				i = useZigZag ? (highestUsedIndex / 16 * 2 + 2) * 8 : (highestUsedIndex / 8 + 1) * 8;
+			}
+			return i;
+		}
+
+		private boolean layoutContainsItem(int id, Map<Integer, Integer> previewLayout)
+		{
+			int baseId = plugin.getVariationBaseId(plugin.getNonPlaceholderId(id));
+			for (Integer item : previewLayout.values())
+			{
+				if (baseId == plugin.getVariationBaseId(plugin.getNonPlaceholderId(item)))
+				{
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private static int toZigZagIndex(int inventoryIndex)
+		{
+			int row = (inventoryIndex / 16) * 2;
+			inventoryIndex -= (inventoryIndex / 16) * 16;
+			int index = inventoryIndex % 2 == 0 ? 0 : 8;
+			index += inventoryIndex / 2;
+			return index + row * 8;
+		}
+	}
+}
@@ -0,0 +1,120 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import org.junit.Test;
+
+public class LayoutJournalTest
+{
+	@Test
+	public void moveIsUndoneAsOneStep()
+	{
+		Layout layout = Layout.fromString("10:0,20:1");
+		layout.enableJournal(16);
+		layout.moveItem(0, 1, -1);
+		assertEquals("20:0,10:1", layout.toString());
+
+		assertTrue(layout.undo());
+		assertEquals("10:0,20:1", layout.toString());
+		assertFalse(layout.canUndo());
+
+		assertTrue(layout.redo());
+		assertEquals("20:0,10:1", layout.toString());
+		assertFalse(layout.canRedo());
+	}
+
+	@Test
+	public void newChangeDropsRedo()
+	{
+		Layout layout = Layout.fromString("10:0");
+		layout.enableJournal(16);
+		layout.putItem(20, 1);
+		layout.undo();
+		assertTrue(layout.canRedo());
+		layout.putItem(30, 2);
+		assertFalse(layout.canRedo());
+		assertEquals("10:0,30:2", layout.toString());
+	}
+
+	@Test
+	public void undoAndRedoAcrossEviction()
+	{
+		for (int capacity : new int[]{1, 2, 3, 5, 8, 13, 64})
+		{
+			Random random = new Random(capacity);
+			Layout layout = LayoutTest.randomLayout(random, 20, 40);
+			layout.enableJournal(capacity);
+			// The layout after each operation.
+			List<String> history = new ArrayList<>();
+			history.add(layout.toString());
+			for (int i = 0; i < 100; i++)
+			{
+				applyRandomOperation(random, layout);
+				history.add(layout.toString());
+			}
+
+			// Undo walks back through the history until the journal runs out, and never lands between operations.
+			int undone = 0;
+			while (layout.undo())
+			{
+				undone++;
+				assertEquals("capacity " + capacity + " undo " + undone, history.get(history.size() - 1 - undone), layout.toString());
+			}
+			assertTrue("capacity " + capacity, undone <= capacity);
+			assertFalse(layout.canUndo());
+
+			int redone = 0;
+			while (layout.redo())
+			{
+				redone++;
+			}
+			assertEquals(undone, redone);
+			assertEquals(history.get(history.size() - 1), layout.toString());
+		}
+	}
+
+	@Test
+	public void operationLargerThanTheJournalIsNotRecorded()
+	{
+		Layout layout = Layout.fromString("10:0,20:1");
+		// A swap changes four slots.
+		layout.enableJournal(3);
+		layout.moveItem(0, 1, -1);
+		assertFalse(layout.canUndo());
+		assertEquals("20:0,10:1", layout.toString());
+
+		// Later operations that fit are recorded again.
+		layout.putItem(30, 2);
+		assertTrue(layout.undo());
+		assertEquals("20:0,10:1", layout.toString());
+		assertFalse(layout.canUndo());
+	}
+
+	/** Applies a random mutation that always records something, so that each one is a step in the history. */
+	private static void applyRandomOperation(Random random, Layout layout)
+	{
+		int index = random.nextInt(50);
+		int operation = layout.isEmpty() ? 0 : random.nextInt(4);
+		switch (operation)
+		{
+			case 0:
+				// Putting the same item back records nothing.
+				int itemId = 1 + random.nextInt(500);
+				layout.putItem(layout.getItemAtIndex(index) == itemId ? itemId + 1 : itemId, index);
+				break;
+			case 1:
+				layout.clearIndex(layout.getLowestUsedIndex());
+				break;
+			case 2:
+				layout.moveItem(layout.getHighestUsedIndex(), index, -1);
+				break;
+			default:
+				layout.duplicateItem(layout.getLowestUsedIndex(), -1);
+				break;
+		}
+	}
+}
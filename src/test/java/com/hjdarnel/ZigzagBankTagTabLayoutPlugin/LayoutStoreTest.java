@@ -0,0 +1,241 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LayoutStoreTest
+{
+	private static final int LAYOUT_VERSION = 1;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File directory;
+	private LayoutStore store;
+
+	@Before
+	public void before() throws IOException
+	{
+		directory = folder.newFolder("layouts");
+		store = open(LAYOUT_VERSION);
+	}
+
+	@After
+	public void after()
+	{
+		store.close();
+	}
+
+	@Test
+	public void putAndGetAcrossReopens() throws IOException
+	{
+		Random random = new Random(5);
+		Map<Long, Layout> expected = new HashMap<>();
+		for (int i = 0; i < 3000; i++)
+		{
+			// Few distinct fingerprints, so that most puts overwrite and the data file gets compacted.
+			long fingerprint = random.nextInt(700) * 0x9E3779B97F4A7C15L;
+			Layout layout = LayoutTest.randomLayout(random, random.nextInt(300), 1000);
+			store.put(fingerprint, layout);
+			expected.put(fingerprint, layout);
+
+			long lookup = random.nextInt(800) * 0x9E3779B97F4A7C15L;
+			assertSameLayout("put " + i, expected.get(lookup), store.get(lookup));
+			if (i % 500 == 499)
+			{
+				store.close();
+				store = open(LAYOUT_VERSION);
+			}
+		}
+
+		store.close();
+		store = open(LAYOUT_VERSION);
+		for (Map.Entry<Long, Layout> entry : expected.entrySet())
+		{
+			assertSameLayout("after reopen", entry.getValue(), store.get(entry.getKey()));
+		}
+		// Old generations are cleaned up.
+		assertEquals(1, directory.list((dir, name) -> name.endsWith(".dat")).length);
+		assertEquals(1, directory.list((dir, name) -> name.endsWith(".idx")).length);
+	}
+
+	@Test
+	public void layoutIsEncodedWhenPut() throws IOException
+	{
+		Layout layout = Layout.fromString("10:0,20:1");
+		store.put(1L, layout);
+		layout.putItem(30, 2);
+		assertEquals("10:0,20:1", store.get(1L).toString());
+	}
+
+	@Test
+	public void truncatedDataNeverReturnsTheWrongLayout() throws IOException
+	{
+		Map<Long, Layout> expected = new HashMap<>();
+		Random random = new Random(6);
+		for (long fingerprint = 1; fingerprint <= 200; fingerprint++)
+		{
+			Layout layout = LayoutTest.randomLayout(random, 50, 400);
+			store.put(fingerprint, layout);
+			expected.put(fingerprint, layout);
+		}
+		store.close();
+
+		for (File file : directory.listFiles((dir, name) -> name.endsWith(".dat")))
+		{
+			try (RandomAccessFile data = new RandomAccessFile(file, "rw"))
+			{
+				data.setLength(data.length() / 2);
+			}
+		}
+		store = open(LAYOUT_VERSION);
+		int found = 0;
+		for (Map.Entry<Long, Layout> entry : expected.entrySet())
+		{
+			Layout layout = store.get(entry.getKey());
+			if (layout != null)
+			{
+				assertSameLayout("fingerprint " + entry.getKey(), entry.getValue(), layout);
+				found++;
+			}
+		}
+		assertTrue(found > 0 && found < expected.size());
+
+		// Lost layouts can be stored again.
+		store.put(200L, expected.get(200L));
+		assertSameLayout("stored again", expected.get(200L), store.get(200L));
+	}
+
+	@Test
+	public void corruptDataIsSkipped() throws IOException
+	{
+		store.put(1L, Layout.fromString("10:0,20:1"));
+		store.put(2L, Layout.fromString("30:0"));
+		store.close();
+
+		for (File file : directory.listFiles((dir, name) -> name.endsWith(".dat")))
+		{
+			try (RandomAccessFile data = new RandomAccessFile(file, "rw"))
+			{
+				// The last byte of the first record's payload.
+				data.seek(16 + CompactLayoutCodec.encode(Layout.fromString("10:0,20:1")).length - 1);
+				data.write(0x55);
+			}
+		}
+		store = open(LAYOUT_VERSION);
+		assertNull(store.get(1L));
+		assertEquals("30:0", store.get(2L).toString());
+	}
+
+	@Test
+	public void unreadableStoreStartsOver() throws IOException
+	{
+		store.put(1L, Layout.fromString("10:0"));
+		store.close();
+
+		Files.write(directory.toPath().resolve("CURRENT"), "not generations".getBytes(StandardCharsets.UTF_8));
+		store = open(LAYOUT_VERSION);
+		assertNull(store.get(1L));
+		store.put(1L, Layout.fromString("20:0"));
+		assertEquals("20:0", store.get(1L).toString());
+
+		store.close();
+		for (File file : directory.listFiles((dir, name) -> name.endsWith(".idx")))
+		{
+			Files.write(file.toPath(), new byte[]{1, 2, 3});
+		}
+		store = open(LAYOUT_VERSION);
+		assertNull(store.get(1L));
+	}
+
+	@Test
+	public void otherLayoutVersionStartsOver() throws IOException
+	{
+		store.put(1L, Layout.fromString("10:0"));
+		store.close();
+
+		store = open(LAYOUT_VERSION + 1);
+		assertNull(store.get(1L));
+		store.put(2L, Layout.fromString("20:0"));
+		store.close();
+
+		store = open(LAYOUT_VERSION + 1);
+		assertEquals("20:0", store.get(2L).toString());
+	}
+
+	@Test
+	public void clientUpdateStartsOver() throws IOException
+	{
+		// The item variation data may have changed with the client.
+		store.close();
+		store = open(LayoutGenerator.layoutVersion("1.10.40"));
+		store.put(1L, Layout.fromString("10:0"));
+		store.close();
+
+		store = open(LayoutGenerator.layoutVersion("1.10.40"));
+		assertEquals("10:0", store.get(1L).toString());
+		store.close();
+
+		store = open(LayoutGenerator.layoutVersion("1.10.41"));
+		assertNull(store.get(1L));
+	}
+
+	@Test
+	public void onlyOneStorePerDirectory() throws IOException
+	{
+		try
+		{
+			open(LAYOUT_VERSION).close();
+			fail();
+		}
+		catch (IOException expected)
+		{
+		}
+
+		store.put(1L, Layout.fromString("10:0"));
+		store.close();
+		store = open(LAYOUT_VERSION);
+		assertNotNull(store.get(1L));
+	}
+
+	@Test
+	public void writesAfterCloseAreDropped() throws IOException
+	{
+		store.close();
+		store.put(1L, Layout.fromString("10:0"));
+		assertNull(store.get(1L));
+	}
+
+	private LayoutStore open(int layoutVersion) throws IOException
+	{
+		// Writes run straight away.
+		return LayoutStore.open(directory, layoutVersion, Runnable::run);
+	}
+
+	private static void assertSameLayout(String message, Layout expected, Layout actual)
+	{
+		if (expected == null)
+		{
+			assertNull(message, actual);
+			return;
+		}
+		assertNotNull(message, actual);
+		assertTrue(message + ": expected " + expected + " but was " + actual, expected.contentEquals(actual));
+	}
+}
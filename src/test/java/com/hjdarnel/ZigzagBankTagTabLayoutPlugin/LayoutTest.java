@@ -0,0 +1,299 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import org.junit.Test;
+
+public class LayoutTest
+{
+	@Test
+	public void randomOperationsMatchMapLayout()
+	{
+		for (long seed = 0; seed < 20; seed++)
+		{
+			Random random = new Random(seed);
+			Layout layout = Layout.emptyLayout();
+			MapLayout expected = new MapLayout();
+			for (int step = 0; step < 2000; step++)
+			{
+				String operation = applyRandomOperation(random, layout, expected);
+				assertSameContents("seed " + seed + " step " + step + " " + operation, expected, layout);
+			}
+		}
+	}
+
+	@Test
+	public void moveItemSwapsAndRenamesDuplicates()
+	{
+		Layout layout = Layout.fromString("10:0,20:1,10:5");
+		// The widget shows item 11 where the layout has 10, so every 10 becomes 11.
+		layout.moveItem(0, 1, 11);
+		assertEquals("20:0,11:1,11:5", layout.toString());
+
+		layout.moveItem(5, 9, -1);
+		assertEquals("20:0,11:1,11:9", layout.toString());
+	}
+
+	@Test
+	public void duplicateItemUsesFirstFreeIndexAfterIt()
+	{
+		Layout layout = Layout.fromString("10:0,20:1,30:2,40:4");
+		layout.duplicateItem(1, -1);
+		assertEquals("10:0,20:1,30:2,20:3,40:4", layout.toString());
+		layout.duplicateItem(0, 11);
+		assertEquals("11:0,20:1,30:2,20:3,40:4,11:5", layout.toString());
+		assertEquals(2, layout.countItemsWithId(11));
+	}
+
+	@Test
+	public void stringRoundTrip()
+	{
+		Random random = new Random(1);
+		for (int i = 0; i < 200; i++)
+		{
+			Layout layout = randomLayout(random, 300, 2000);
+			assertTrue(layout.contentEquals(Layout.fromString(layout.toString())));
+		}
+	}
+
+	@Test
+	public void negativeIndexesAreIgnored()
+	{
+		Layout layout = Layout.fromString("10:-3,20:4");
+		assertEquals("20:4", layout.toString());
+
+		layout.putItem(30, -1);
+		assertEquals("20:4", layout.toString());
+		assertEquals(1, layout.size());
+	}
+
+	@Test
+	public void malformedPairsAreSkippedWhenIgnoringNfe()
+	{
+		assertEquals("10:0,30:2", Layout.fromString("10:0,abc,20:,30:2,:4", true).toString());
+		try
+		{
+			Layout.fromString("10:0,abc");
+			fail();
+		}
+		catch (NumberFormatException expected)
+		{
+		}
+	}
+
+	@Test
+	public void indexesAboveTheCapAreRejected()
+	{
+		for (String layoutString : new String[]{"1:2147483647", "1:2147483600", "1:60000000", "1:" + (Layout.MAX_INDEX + 1)})
+		{
+			assertEquals(0, Layout.fromString(layoutString, true).size());
+			try
+			{
+				Layout.fromString(layoutString);
+				fail(layoutString);
+			}
+			catch (NumberFormatException expected)
+			{
+			}
+		}
+		assertEquals("5:3", Layout.fromString("5:3,1:60000000", true).toString());
+
+		Layout layout = Layout.emptyLayout();
+		layout.putItem(7, Layout.MAX_INDEX);
+		assertEquals(7, layout.getItemAtIndex(Layout.MAX_INDEX));
+		try
+		{
+			layout.putItem(7, Layout.MAX_INDEX + 1);
+			fail();
+		}
+		catch (IllegalArgumentException expected)
+		{
+		}
+	}
+
+	@Test
+	public void copyIsIndependent()
+	{
+		Layout layout = Layout.fromString("10:0,20:70");
+		Layout copy = layout.copy();
+		copy.putItem(30, 1);
+		layout.clearIndex(70);
+		assertEquals("10:0", layout.toString());
+		assertEquals("10:0,30:1,20:70", copy.toString());
+	}
+
+	static Layout randomLayout(Random random, int size, int maxIndex)
+	{
+		Layout layout = Layout.emptyLayout();
+		for (int i = 0; i < size; i++)
+		{
+			layout.putItem(1 + random.nextInt(500), random.nextInt(maxIndex));
+		}
+		return layout;
+	}
+
+	/** Applies the same random mutation to both layouts, and returns a description of it. */
+	private static String applyRandomOperation(Random random, Layout layout, MapLayout expected)
+	{
+		// Few ids and indexes, so that duplicates, swaps and collisions are common.
+		int itemId = random.nextInt(12) - 1;
+		int index = random.nextInt(150);
+		switch (random.nextInt(5))
+		{
+			case 0:
+			case 1:
+				layout.putItem(itemId, index);
+				expected.putItem(itemId, index);
+				return "putItem(" + itemId + ", " + index + ")";
+			case 2:
+				layout.clearIndex(index);
+				expected.clearIndex(index);
+				return "clearIndex(" + index + ")";
+			case 3:
+			{
+				List<Integer> used = new ArrayList<>(expected.slots.keySet());
+				if (used.isEmpty())
+				{
+					return "nothing";
+				}
+				int from = used.get(random.nextInt(used.size()));
+				int widgetItemId = random.nextBoolean() ? -1 : 1 + random.nextInt(11);
+				layout.moveItem(from, index, widgetItemId);
+				expected.moveItem(from, index, widgetItemId);
+				return "moveItem(" + from + ", " + index + ", " + widgetItemId + ")";
+			}
+			default:
+			{
+				List<Integer> used = new ArrayList<>(expected.slots.keySet());
+				if (used.isEmpty())
+				{
+					return "nothing";
+				}
+				int clicked = used.get(random.nextInt(used.size()));
+				int widgetItemId = random.nextBoolean() ? -1 : 1 + random.nextInt(11);
+				layout.duplicateItem(clicked, widgetItemId);
+				expected.duplicateItem(clicked, widgetItemId);
+				return "duplicateItem(" + clicked + ", " + widgetItemId + ")";
+			}
+		}
+	}
+
+	private static void assertSameContents(String message, MapLayout expected, Layout actual)
+	{
+		assertEquals(message, expected.slots.size(), actual.size());
+		for (int index = 0; index < 200; index++)
+		{
+			assertEquals(message + " index " + index, expected.getItemAtIndex(index), actual.getItemAtIndex(index));
+		}
+		for (int after = -1; after < 160; after += 7)
+		{
+			assertEquals(message + " first empty after " + after, expected.getFirstEmptyIndex(after), actual.getFirstEmptyIndex(after));
+		}
+		for (int itemId = 1; itemId < 12; itemId++)
+		{
+			assertEquals(message + " count of " + itemId, expected.countItemsWithId(itemId), actual.countItemsWithId(itemId));
+		}
+	}
+
+	/** The map-backed Layout this plugin started out with, kept as the reference for how mutations behave. */
+	private static final class MapLayout
+	{
+		private final Map<Integer, Integer> slots = new HashMap<>();
+
+		void putItem(int itemId, int index)
+		{
+			if (itemId <= 0)
+			{
+				slots.remove(index);
+				return;
+			}
+			slots.put(index, itemId);
+		}
+
+		int getItemAtIndex(int index)
+		{
+			return slots.getOrDefault(index, -1);
+		}
+
+		void clearIndex(int index)
+		{
+			slots.remove(index);
+		}
+
+		int countItemsWithId(int itemId)
+		{
+			int count = 0;
+			for (int slotItemId : slots.values())
+			{
+				if (slotItemId == itemId)
+				{
+					count++;
+				}
+			}
+			return count;
+		}
+
+		int getFirstEmptyIndex(int afterThisIndex)
+		{
+			int index = afterThisIndex + 1;
+			while (slots.containsKey(index))
+			{
+				index++;
+			}
+			return index;
+		}
+
+		void moveItem(int draggedItemIndex, int targetIndex, int draggedItemId)
+		{
+			int layoutItemId = getItemAtIndex(draggedItemIndex);
+			if (draggedItemId == -1)
+			{
+				draggedItemId = layoutItemId;
+			}
+			else if (layoutItemId != draggedItemId)
+			{
+				replaceItemId(layoutItemId, draggedItemId);
+			}
+			int targetItemId = getItemAtIndex(targetIndex);
+			clearIndex(draggedItemIndex);
+			clearIndex(targetIndex);
+			putItem(draggedItemId, targetIndex);
+			if (targetItemId != -1)
+			{
+				putItem(targetItemId, draggedItemIndex);
+			}
+		}
+
+		void duplicateItem(int clickedItemIndex, int itemIdAtIndex)
+		{
+			int duplicatedItemIndex = getFirstEmptyIndex(clickedItemIndex);
+			int layoutItemId = getItemAtIndex(clickedItemIndex);
+			if (itemIdAtIndex == -1)
+			{
+				itemIdAtIndex = layoutItemId;
+			}
+			if (layoutItemId != itemIdAtIndex)
+			{
+				replaceItemId(layoutItemId, itemIdAtIndex);
+			}
+			putItem(itemIdAtIndex, duplicatedItemIndex);
+		}
+
+		private void replaceItemId(int oldItemId, int newItemId)
+		{
+			for (Map.Entry<Integer, Integer> slot : slots.entrySet())
+			{
+				if (slot.getValue() == oldItemId)
+				{
+					slot.setValue(newItemId);
+				}
+			}
+		}
+	}
+}
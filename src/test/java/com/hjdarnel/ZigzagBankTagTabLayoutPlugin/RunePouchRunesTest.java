@@ -0,0 +1,98 @@
+package com.hjdarnel.ZigzagBankTagTabLayoutPlugin;
+
+import net.runelite.api.ItemID;
+import net.runelite.api.Varbits;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import org.junit.Test;
+
+public class RunePouchRunesTest
+{
+	private final FakeClient client = new FakeClient();
+	private final RunePouchRunes runes = new RunePouchRunes();
+
+	@Test
+	public void decodesTheRunesInNonEmptySlots()
+	{
+		client.setRunePouchSlot(0, 1, 100);
+		client.setRunePouchSlot(1, 0, 0);
+		client.setRunePouchSlot(2, 7, 50);
+		client.setRunePouchSlot(3, 15, 5);
+		assertArrayEquals(new int[]{ItemID.AIR_RUNE, ItemID.DEATH_RUNE, ItemID.WRATH_RUNE}, runes.getRuneItemIds(client.getClient()));
+	}
+
+	@Test
+	public void emptyPouchHasNoRunes()
+	{
+		assertArrayEquals(new int[0], runes.getRuneItemIds(client.getClient()));
+	}
+
+	@Test
+	public void readsTheClientOnlyOnce()
+	{
+		client.setRunePouchSlot(0, 1, 100);
+		int[] runeItemIds = runes.getRuneItemIds(client.getClient());
+		assertEquals(8, client.getVarbitValueCalls());
+		assertEquals(1, client.getEnumCalls());
+
+		assertSame(runeItemIds, runes.getRuneItemIds(client.getClient()));
+		assertEquals(8, client.getVarbitValueCalls());
+		assertEquals(1, client.getEnumCalls());
+	}
+
+	@Test
+	public void followsVarbitChanges()
+	{
+		client.setRunePouchSlot(0, 1, 100);
+		int[] before = runes.getRuneItemIds(client.getClient());
+
+		setVarbit(Varbits.RUNE_POUCH_RUNE2, 4);
+		setVarbit(Varbits.RUNE_POUCH_AMOUNT2, 30);
+		assertArrayEquals(new int[]{ItemID.AIR_RUNE, ItemID.FIRE_RUNE}, runes.getRuneItemIds(client.getClient()));
+
+		setVarbit(Varbits.RUNE_POUCH_RUNE1, 14);
+		assertArrayEquals(new int[]{ItemID.ASTRAL_RUNE, ItemID.FIRE_RUNE}, runes.getRuneItemIds(client.getClient()));
+
+		setVarbit(Varbits.RUNE_POUCH_AMOUNT1, 0);
+		assertArrayEquals(new int[]{ItemID.FIRE_RUNE}, runes.getRuneItemIds(client.getClient()));
+
+		// Changes come from the events alone, and earlier arrays are left as they were.
+		assertEquals(8, client.getVarbitValueCalls());
+		assertEquals(1, client.getEnumCalls());
+		assertArrayEquals(new int[]{ItemID.AIR_RUNE}, before);
+	}
+
+	@Test
+	public void otherVarbitsAreIgnored()
+	{
+		client.setRunePouchSlot(0, 1, 100);
+		int[] runeItemIds = runes.getRuneItemIds(client.getClient());
+		setVarbit(Varbits.RUNE_POUCH_AMOUNT1 + 100000, 5);
+		assertSame(runeItemIds, runes.getRuneItemIds(client.getClient()));
+	}
+
+	@Test
+	public void rereadsTheClientAfterInvalidate()
+	{
+		client.setRunePouchSlot(0, 1, 100);
+		runes.getRuneItemIds(client.getClient());
+
+		// A change missed while invalidated, e.g. while logged out.
+		runes.invalidate();
+		client.setRunePouchSlot(0, 2, 100);
+		runes.onVarbitChanged(client.getClient(), Varbits.RUNE_POUCH_RUNE1, 2);
+		assertEquals(8, client.getVarbitValueCalls());
+
+		assertArrayEquals(new int[]{ItemID.WATER_RUNE}, runes.getRuneItemIds(client.getClient()));
+		assertEquals(16, client.getVarbitValueCalls());
+		assertEquals(1, client.getEnumCalls());
+	}
+
+	/** Sets the varbit and posts the change, like the client does. */
+	private void setVarbit(int varbitId, int value)
+	{
+		client.setVarbitValue(varbitId, value);
+		runes.onVarbitChanged(client.getClient(), varbitId, value);
+	}
+}